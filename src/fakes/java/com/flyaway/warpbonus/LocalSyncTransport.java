@@ -0,0 +1,54 @@
+package com.flyaway.warpbonus;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+/**
+ * Канал синхронизации внутри одного процесса: несколько экземпляров, подключённых к одной {@link Bus},
+ * получают сообщения друг друга. Заменяет messaging-service LuckPerms в тестах синхронизации.
+ */
+final class LocalSyncTransport implements SyncTransport {
+    private final Bus bus;
+    private final Consumer<String> receiver;
+
+    LocalSyncTransport(Bus bus, Consumer<String> receiver) {
+        this.bus = bus;
+        this.receiver = receiver;
+        bus.members.add(this);
+    }
+
+    @Override
+    public String getName() {
+        return "local";
+    }
+
+    @Override
+    public boolean send(String payload) {
+        for (LocalSyncTransport member : bus.members) {
+            if (member != this) {
+                bus.executor.execute(() -> member.receiver.accept(payload));
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void close() {
+        bus.members.remove(this);
+    }
+
+    /**
+     * Общая «шина». Сообщения доставляются через переданный исполнитель, как у настоящего
+     * брокера — асинхронно (или синхронно, если передать {@code Runnable::run}).
+     */
+    static final class Bus {
+        private final List<LocalSyncTransport> members = new CopyOnWriteArrayList<>();
+        private final Executor executor;
+
+        Bus(Executor executor) {
+            this.executor = executor;
+        }
+    }
+}
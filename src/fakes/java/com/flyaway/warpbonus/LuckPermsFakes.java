@@ -0,0 +1,177 @@
+package com.flyaway.warpbonus;
+
+import net.luckperms.api.LuckPerms;
+import net.luckperms.api.LuckPermsProvider;
+import net.luckperms.api.context.ContextManager;
+import net.luckperms.api.model.group.Group;
+import net.luckperms.api.model.group.GroupManager;
+import net.luckperms.api.model.user.User;
+import net.luckperms.api.node.Node;
+import net.luckperms.api.node.NodeBuilder;
+import net.luckperms.api.node.NodeBuilderRegistry;
+import net.luckperms.api.node.ScopedNode;
+import net.luckperms.api.query.QueryMode;
+import net.luckperms.api.query.QueryOptions;
+import net.luckperms.api.query.QueryOptionsRegistry;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * Простые подделки интерфейсов LuckPerms для запуска кода плагина без сервера (бенчмарки, симуляция).
+ * Реализованы только методы, которые вызывает плагин; остальные бросают UnsupportedOperationException.
+ */
+final class LuckPermsFakes {
+    private static volatile boolean providerInstalled;
+    private static volatile Object emptyContexts;
+
+    private LuckPermsFakes() {
+    }
+
+    /**
+     * Создаёт реализацию интерфейса, методы которой берутся из карты «имя метода -> обработчик».
+     */
+    @SuppressWarnings("unchecked")
+    static <T> T proxy(Class<T> type, Map<String, Function<Object[], Object>> methods) {
+        return (T) Proxy.newProxyInstance(LuckPermsFakes.class.getClassLoader(), new Class<?>[]{type}, (self, method, args) -> {
+            Function<Object[], Object> handler = methods.get(method.getName());
+            if (handler != null) {
+                return handler.apply(args);
+            }
+            return switch (method.getName()) {
+                case "equals" -> self == args[0];
+                case "hashCode" -> System.identityHashCode(self);
+                case "toString" -> type.getSimpleName() + "@fake";
+                default -> throw new UnsupportedOperationException(type.getSimpleName() + "." + method.getName());
+            };
+        });
+    }
+
+    static Node node(String key, boolean value) {
+        // NodeBuilder.build() возвращает ScopedNode, поэтому подделка реализует именно его
+        return proxy(ScopedNode.class, Map.of(
+                "getKey", args -> key,
+                "getValue", args -> value,
+                "hasExpiry", args -> false,
+                "getContexts", args -> emptyContexts()));
+    }
+
+    /**
+     * Пустой набор контекстов того типа, который возвращает {@link Node#getContexts()} в текущей версии API.
+     */
+    private static Object emptyContexts() {
+        Object contexts = emptyContexts;
+        if (contexts == null) {
+            try {
+                Class<?> type = Node.class.getMethod("getContexts").getReturnType();
+                contexts = proxy(type, Map.of(
+                        "isEmpty", args -> true,
+                        "size", args -> 0,
+                        "iterator", args -> Collections.emptyIterator()));
+            } catch (NoSuchMethodException e) {
+                throw new IllegalStateException(e);
+            }
+            emptyContexts = contexts;
+        }
+        return contexts;
+    }
+
+    /**
+     * Построитель узлов для {@code Node.builder(key)}: поддерживает только value(...) и build().
+     */
+    @SuppressWarnings("unchecked")
+    private static NodeBuilder<?, ?> nodeBuilder(String key) {
+        boolean[] value = {true};
+        NodeBuilder<?, ?>[] self = new NodeBuilder<?, ?>[1];
+        self[0] = proxy(NodeBuilder.class, Map.of(
+                "value", args -> {
+                    value[0] = (Boolean) args[0];
+                    return self[0];
+                },
+                "build", args -> node(key, value[0])));
+        return self[0];
+    }
+
+    static Group group(String name, Collection<Node> nodes) {
+        return proxy(Group.class, Map.of(
+                "getName", args -> name,
+                "getNodes", args -> nodes));
+    }
+
+    static User user(UUID playerId, String primaryGroup, Collection<Group> inheritedGroups, Collection<Node> nodes) {
+        return proxy(User.class, Map.of(
+                "getUniqueId", args -> playerId,
+                "getUsername", args -> null,
+                "getPrimaryGroup", args -> primaryGroup,
+                "getInheritedGroups", args -> inheritedGroups,
+                "getNodes", args -> nodes));
+    }
+
+    static GroupManager groupManager(Collection<Group> groups) {
+        Map<String, Group> byName = new HashMap<>();
+        for (Group group : groups) {
+            byName.put(group.getName(), group);
+        }
+        return proxy(GroupManager.class, Map.of(
+                "getGroup", args -> byName.get((String) args[0]),
+                "getLoadedGroups", args -> Set.copyOf(groups),
+                "isLoaded", args -> byName.containsKey((String) args[0])));
+    }
+
+    /**
+     * {@link QueryOptions#nonContextual()} и {@code Node.builder(key)} обращаются к {@link LuckPermsProvider},
+     * поэтому без сервера в нём нужно зарегистрировать заглушку с параметрами запросов по умолчанию,
+     * менеджером контекстов и построителями узлов.
+     */
+    static synchronized void installProvider() {
+        if (providerInstalled) return;
+
+        Map<QueryMode, QueryOptions> options = new HashMap<>();
+        for (QueryMode mode : QueryMode.values()) {
+            options.put(mode, proxy(QueryOptions.class, Map.of("mode", args -> mode)));
+        }
+        ContextManager contextManager = proxy(ContextManager.class, Map.of(
+                "queryOptionsBuilder", args -> proxy(QueryOptions.Builder.class, Map.of(
+                        "build", ignored -> options.get((QueryMode) args[0])))));
+        // nonContextual() без аргументов берёт готовые параметры из реестра, а не из построителя
+        QueryOptionsRegistry optionsRegistry = proxy(QueryOptionsRegistry.class, Map.of(
+                "defaultContextualOptions", args -> options.get(QueryMode.CONTEXTUAL),
+                "defaultNonContextualOptions", args -> options.get(QueryMode.NON_CONTEXTUAL)));
+        NodeBuilderRegistry builderRegistry = proxy(NodeBuilderRegistry.class, Map.of(
+                "forKey", args -> nodeBuilder((String) args[0])));
+        LuckPerms luckPerms = proxy(LuckPerms.class, Map.of(
+                "getContextManager", args -> contextManager,
+                "getQueryOptionsRegistry", args -> optionsRegistry,
+                "getNodeBuilderRegistry", args -> builderRegistry));
+
+        try {
+            Method register = LuckPermsProvider.class.getDeclaredMethod("register", LuckPerms.class);
+            register.setAccessible(true);
+            register.invoke(null, luckPerms);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Не удалось зарегистрировать LuckPermsProvider", e);
+        }
+        providerInstalled = true;
+    }
+
+    /**
+     * Набор прав, похожий на реальную группу: немного варп-пермишенов среди множества обычных.
+     */
+    static List<Node> groupNodes(int count, int warpLimit) {
+        Node[] nodes = new Node[count];
+        for (int i = 0; i < count; i++) {
+            nodes[i] = i % 50 == 0
+                    ? node(WarpBonusManager.WARP_PERMISSION_PREFIX + Math.max(1, warpLimit - i / 50), true)
+                    : node("some.plugin.permission." + i, i % 7 != 0);
+        }
+        return List.of(nodes);
+    }
+}
@@ -0,0 +1,61 @@
+package com.flyaway.warpbonus;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Хранилище в памяти без ввода-вывода: измеряется только работа кода плагина поверх него.
+ */
+final class MemoryBonusStorage implements BonusStorage {
+    private final Map<UUID, Integer> data;
+
+    MemoryBonusStorage(Map<UUID, Integer> data) {
+        this.data = new ConcurrentHashMap<>(data);
+    }
+
+    @Override
+    public String getName() {
+        return "memory";
+    }
+
+    @Override
+    public Map<UUID, Integer> loadAll() {
+        return new HashMap<>(data);
+    }
+
+    @Override
+    public int get(UUID playerId) {
+        return data.getOrDefault(playerId, 0);
+    }
+
+    @Override
+    public void set(UUID playerId, int amount) {
+        if (amount > 0) {
+            data.put(playerId, amount);
+        } else {
+            data.remove(playerId);
+        }
+    }
+
+    @Override
+    public int increment(UUID playerId, int delta) {
+        Integer amount = data.compute(playerId, (id, current) -> {
+            int updated = Math.max(0, (current != null ? current : 0) + delta);
+            return updated > 0 ? updated : null;
+        });
+        return amount != null ? amount : 0;
+    }
+
+    @Override
+    public void list(ObjIntConsumer<UUID> consumer) {
+        data.forEach(consumer::accept);
+    }
+
+    @Override
+    public void saveBatch(Map<UUID, Integer> changes) {
+        changes.forEach(this::set);
+    }
+}
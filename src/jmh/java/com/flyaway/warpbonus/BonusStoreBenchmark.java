@@ -0,0 +1,86 @@
+package com.flyaway.warpbonus;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Чтение и изменение бонусов в памяти при разном количестве сохранённых игроков.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class BonusStoreBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    public int players;
+
+    private BonusStore store;
+    private UUID[] ids;
+
+    @Setup
+    public void setUp() throws IOException {
+        Random random = new Random(42);
+        Map<UUID, Integer> data = new HashMap<>(players * 2);
+        ids = new UUID[players];
+        for (int i = 0; i < players; i++) {
+            ids[i] = new UUID(random.nextLong(), random.nextLong());
+            data.put(ids[i], 1 + random.nextInt(20));
+        }
+        store = new BonusStore(new MemoryBonusStorage(data), Logger.getLogger("WarpBonusBenchmark"));
+        store.load();
+    }
+
+    @Setup(Level.Iteration)
+    public void flush() {
+        store.flush();
+    }
+
+    private UUID randomId() {
+        return ids[ThreadLocalRandom.current().nextInt(ids.length)];
+    }
+
+    @Benchmark
+    public int get() {
+        return store.get(randomId());
+    }
+
+    @Benchmark
+    public int increment() {
+        return store.increment(randomId(), 1);
+    }
+
+    @Benchmark
+    public int set() {
+        UUID playerId = randomId();
+        store.set(playerId, 1 + (playerId.hashCode() & 15));
+        return store.getPendingWrites();
+    }
+
+    @Benchmark
+    public List<Map.Entry<UUID, Integer>> firstPage() {
+        return store.page(0, 10);
+    }
+}
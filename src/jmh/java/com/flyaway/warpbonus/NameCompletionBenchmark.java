@@ -0,0 +1,71 @@
+package com.flyaway.warpbonus;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Автодополнение ника (один символ и три символа префикса) при разном количестве известных игроков.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class NameCompletionBenchmark {
+    private static final String ALPHABET = "abcdefghijklmnopqrstuvwxyz0123456789_";
+
+    @Param({"10000", "100000", "1000000"})
+    public int players;
+
+    private PlayerNameIndex index;
+    private String[] prefixes;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        index = new PlayerNameIndex();
+        for (int i = 0; i < players; i++) {
+            UUID playerId = new UUID(random.nextLong(), random.nextLong());
+            index.setTracked(playerId, true);
+            index.put(playerId, randomName(random, 3 + random.nextInt(14)));
+        }
+        prefixes = new String[1024];
+        for (int i = 0; i < prefixes.length; i++) {
+            prefixes[i] = randomName(random, 3);
+        }
+    }
+
+    private static String randomName(Random random, int length) {
+        StringBuilder name = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            name.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+        }
+        return name.toString();
+    }
+
+    @Benchmark
+    public List<String> completeOneChar() {
+        return index.complete(prefixes[ThreadLocalRandom.current().nextInt(prefixes.length)].substring(0, 1), 50);
+    }
+
+    @Benchmark
+    public List<String> completeThreeChars() {
+        return index.complete(prefixes[ThreadLocalRandom.current().nextInt(prefixes.length)], 50);
+    }
+}
@@ -0,0 +1,75 @@
+package com.flyaway.warpbonus;
+
+import net.luckperms.api.model.group.Group;
+import net.luckperms.api.model.user.User;
+import net.luckperms.api.node.Node;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Расчёт группового лимита варпов: разбор прав одной группы и лимит пользователя по индексу.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WarpLimitBenchmark {
+
+    /** Количество прав у каждой группы. */
+    @Param({"10", "100", "1000"})
+    public int nodeCount;
+
+    /** Сколько групп наследует пользователь. */
+    @Param({"1", "5", "20"})
+    public int groupCount;
+
+    private List<Node> groupNodes;
+    private GroupLimitIndex index;
+    private User user;
+
+    @Setup
+    public void setUp() {
+        LuckPermsFakes.installProvider();
+
+        List<Group> groups = new ArrayList<>(groupCount);
+        for (int i = 0; i < groupCount; i++) {
+            groups.add(LuckPermsFakes.group("group" + i, LuckPermsFakes.groupNodes(nodeCount, 3 + i)));
+        }
+        groupNodes = LuckPermsFakes.groupNodes(nodeCount, 10);
+        index = new GroupLimitIndex(LuckPermsFakes.groupManager(groups));
+        index.rebuild();
+        user = LuckPermsFakes.user(UUID.randomUUID(), "group0", groups, List.of());
+    }
+
+    @Benchmark
+    public int warpLimitFromNodes() {
+        return GroupLimitIndex.getWarpLimitFromNodes(groupNodes);
+    }
+
+    @Benchmark
+    public int userLimit() {
+        return index.getUserLimit(user);
+    }
+
+    @Benchmark
+    public int rebuildIndex() {
+        index.rebuild();
+        return index.size();
+    }
+}
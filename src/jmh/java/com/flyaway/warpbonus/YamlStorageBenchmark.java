@@ -0,0 +1,86 @@
+package com.flyaway.warpbonus;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Полная загрузка и сохранение bonus_warps.yml (файл всегда переписывается целиком).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class YamlStorageBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    public int players;
+
+    private final Logger logger = Logger.getLogger("WarpBonusBenchmark");
+    private File folder;
+    private File file;
+    private YamlBonusStorage storage;
+    private UUID changedId;
+    private int counter;
+
+    @Setup
+    public void setUp() throws IOException {
+        folder = Files.createTempDirectory("warpbonus-bench").toFile();
+        file = new File(folder, "bonus_warps.yml");
+
+        Random random = new Random(42);
+        Map<UUID, Integer> data = new HashMap<>(players * 2);
+        for (int i = 0; i < players; i++) {
+            data.put(new UUID(random.nextLong(), random.nextLong()), 1 + random.nextInt(20));
+        }
+        changedId = data.keySet().iterator().next();
+
+        storage = new YamlBonusStorage(file, logger);
+        storage.loadAll();
+        storage.saveBatch(data);
+    }
+
+    @TearDown
+    public void tearDown() {
+        File[] files = folder.listFiles();
+        if (files != null) {
+            for (File child : files) {
+                child.delete();
+            }
+        }
+        folder.delete();
+    }
+
+    @Benchmark
+    public Map<UUID, Integer> load() throws IOException {
+        return new YamlBonusStorage(file, logger).loadAll();
+    }
+
+    /** Одно изменение — но записывается весь файл. */
+    @Benchmark
+    public boolean save() throws IOException {
+        storage.saveBatch(Map.of(changedId, 1 + (++counter & 15)));
+        return storage.hasExternalChanges();
+    }
+}
@@ -0,0 +1,244 @@
+package com.flyaway.warpbonus;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.logging.Logger;
+
+/**
+ * Порядок действий при изменении бонусов и пересчёте прав: очередь пересчёта, пересчёт при подключении
+ * и входе, пересчёт пачками, массовая выдача.
+ * <p>
+ * Не обращается к Bukkit: всё, что зависит от сервера (кто онлайн, поиск ников, события, синхронизация),
+ * передаётся через {@link Environment}. Поэтому один и тот же код выполняют и плагин ({@link WarpBonusManager}),
+ * и нагрузочная симуляция.
+ */
+public class BonusCoordinator {
+    private final BonusStore bonusStore;
+    private final WarpPermissionUpdater permissionUpdater;
+    private final RecalculationQueue recalculationQueue;
+    private final Executor executor;
+    private final Environment environment;
+    private final WarpBonusMetrics metrics;
+    private final Logger logger;
+
+    private volatile long loginTimeoutMillis = 2000;
+    private volatile int batchSize = 100;
+
+    /**
+     * @param permissionUpdater null, если LuckPerms недоступен: бонусы меняются, права не пересчитываются
+     * @param executor          пул для фоновых операций (поиск ников, применение массовых изменений)
+     * @param queueFactory      создаёт очередь пересчёта по переданному обработчику
+     */
+    public BonusCoordinator(BonusStore bonusStore, WarpPermissionUpdater permissionUpdater, Executor executor,
+                            Environment environment, WarpBonusMetrics metrics, Logger logger,
+                            Function<BiConsumer<UUID, RecalculationScheduler.Lane>, RecalculationQueue> queueFactory) {
+        this.bonusStore = bonusStore;
+        this.permissionUpdater = permissionUpdater;
+        this.executor = executor;
+        this.environment = environment;
+        this.metrics = metrics;
+        this.logger = logger;
+        this.recalculationQueue = queueFactory.apply(this::updatePlayerPermissions);
+    }
+
+    public void configure(long loginTimeoutMillis, int batchSize) {
+        this.loginTimeoutMillis = Math.max(0, loginTimeoutMillis);
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    public RecalculationQueue getRecalculationQueue() {
+        return recalculationQueue;
+    }
+
+    /**
+     * Запрашивает пересчёт прав игрока. Повторные запросы в течение периода тишины схлопываются в один.
+     */
+    public void requestRecalculation(UUID playerId, RecalculationScheduler.Lane lane) {
+        recalculationQueue.request(playerId, lane);
+    }
+
+    /**
+     * Бонус игрока изменён: оповещение (через окружение), затем пересчёт прав в указанной полосе.
+     */
+    public void afterChange(UUID playerId, BonusStore.Change change, BonusWarpsChangeEvent.Cause cause,
+                            RecalculationScheduler.Lane lane) {
+        environment.onChanged(playerId, change, cause);
+        requestRecalculation(playerId, lane);
+    }
+
+    /**
+     * Пересчитывает права игрока: загрузка пользователя -> расчёт -> изменение -> сохранение,
+     * без блокировки потоков. Результат — новый итоговый лимит варпов.
+     */
+    public CompletableFuture<Integer> updatePlayerPermissions(UUID playerId, RecalculationScheduler.Lane lane) {
+        if (permissionUpdater == null) {
+            return CompletableFuture.failedFuture(new IllegalStateException("LuckPerms недоступен"));
+        }
+        // Игрок онлайн пересчитывается в первую очередь, откуда бы ни пришёл запрос
+        if (lane != RecalculationScheduler.Lane.ONLINE && environment.isOnline(playerId)) {
+            lane = RecalculationScheduler.Lane.ONLINE;
+        }
+        return permissionUpdater.update(playerId, lane);
+    }
+
+    /**
+     * Пересчитывает права входящего игрока в потоке подключения, где LuckPerms уже загрузил пользователя,
+     * чтобы к появлению игрока лимит был актуальным. Ждёт не дольше заданного таймаута;
+     * если не успели, проверка при входе поставит пересчёт в очередь.
+     */
+    public void recalculateOnLogin(UUID playerId) {
+        if (permissionUpdater == null) return;
+
+        long start = System.nanoTime();
+        try {
+            updatePlayerPermissions(playerId, RecalculationScheduler.Lane.ONLINE).get(loginTimeoutMillis, TimeUnit.MILLISECONDS);
+            metrics.getLoginRecalculation().recordSince(start);
+        } catch (TimeoutException e) {
+            metrics.recordLoginTimeout();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            // Уже залогировано в WarpPermissionUpdater
+        }
+    }
+
+    /**
+     * Быстрая проверка при входе: если пересчёт при подключении не успел или что-то изменилось
+     * между подключением и входом, пересчёт ставится в очередь.
+     */
+    public void verifyOnJoin(UUID playerId) {
+        if (permissionUpdater == null) return;
+
+        if (!permissionUpdater.isUpToDate(playerId)) {
+            metrics.recordJoinFallback();
+            requestRecalculation(playerId, RecalculationScheduler.Lane.ONLINE);
+        }
+    }
+
+    /**
+     * Ставит пачку игроков в массовую полосу. Результат завершается, когда пересчитаны все;
+     * ошибки по отдельным игрокам уже залогированы.
+     */
+    public CompletableFuture<Void> recalculateBatch(Collection<UUID> playerIds) {
+        List<CompletableFuture<Integer>> updates = new ArrayList<>(playerIds.size());
+        for (UUID playerId : playerIds) {
+            updates.add(updatePlayerPermissions(playerId, RecalculationScheduler.Lane.BULK).exceptionally(error -> -1));
+        }
+        return CompletableFuture.allOf(updates.toArray(new CompletableFuture[0]));
+    }
+
+    /**
+     * Пересчитывает пачку и ждёт завершения. Только для собственных потоков фоновых заданий.
+     */
+    public void awaitAll(Collection<UUID> playerIds) {
+        recalculateBatch(playerIds).join();
+    }
+
+    /**
+     * Пересчитывает права сразу многих пользователей пачками: следующая пачка ставится в массовую полосу,
+     * когда завершилась предыдущая. Ожидание не занимает потоки пула, поэтому вызовы API и синхронизация
+     * не стоят в очереди за большим пересчётом. Возвращает количество обработанных пользователей.
+     */
+    public CompletableFuture<Integer> recalculateUsers(Collection<UUID> playerIds, String reason) {
+        if (permissionUpdater == null || playerIds.isEmpty()) {
+            return CompletableFuture.completedFuture(0);
+        }
+
+        long start = System.nanoTime();
+        int size = batchSize;
+        List<UUID> ids = new ArrayList<>(playerIds);
+        CompletableFuture<Void> chain = CompletableFuture.completedFuture(null);
+
+        for (int from = 0; from < ids.size(); from += size) {
+            List<UUID> batch = ids.subList(from, Math.min(from + size, ids.size()));
+            chain = chain.thenComposeAsync(ignored -> recalculateBatch(batch), executor);
+        }
+
+        return chain.thenApply(ignored -> {
+            metrics.getGroupRecalculation().recordSince(start);
+            long elapsedMillis = (System.nanoTime() - start) / 1_000_000L;
+            logger.info("Пересчитаны права " + ids.size() + " пользователей (" + reason + ") за " + elapsedMillis + " мс");
+            return ids.size();
+        });
+    }
+
+    /**
+     * Массово изменяет бонусные варпы: ники разрешаются параллельно, все изменения сохраняются
+     * одной пачкой, после чего для изменённых игроков запрашивается пересчёт прав.
+     */
+    public CompletableFuture<BulkBonusUpdate.Result> applyBulk(BulkBonusUpdate.Mode mode, List<BulkBonusUpdate.Entry> entries,
+                                                              BonusWarpsChangeEvent.Cause cause) {
+        long start = System.nanoTime();
+
+        List<CompletableFuture<UUID>> resolved = new ArrayList<>(entries.size());
+        for (BulkBonusUpdate.Entry entry : entries) {
+            resolved.add(entry.playerId() != null
+                    ? CompletableFuture.completedFuture(entry.playerId())
+                    : CompletableFuture.supplyAsync(() -> environment.resolvePlayerId(entry.playerName()), executor));
+        }
+
+        return CompletableFuture.allOf(resolved.toArray(new CompletableFuture[0])).thenApplyAsync(ignored -> {
+            List<BulkBonusUpdate.EntryResult> results = new ArrayList<>(entries.size());
+            Map<UUID, BonusStore.Change> changed = new LinkedHashMap<>();
+
+            for (int i = 0; i < entries.size(); i++) {
+                BulkBonusUpdate.Entry entry = entries.get(i);
+                UUID playerId = resolved.get(i).join();
+                if (playerId == null) {
+                    results.add(new BulkBonusUpdate.EntryResult(entry, null, 0, "игрок не найден"));
+                    continue;
+                }
+                if (mode == BulkBonusUpdate.Mode.ADD ? entry.amount() <= 0 : entry.amount() < 0) {
+                    results.add(new BulkBonusUpdate.EntryResult(entry, playerId, 0, "некорректное количество"));
+                    continue;
+                }
+
+                BonusStore.Change change = mode == BulkBonusUpdate.Mode.ADD
+                        ? bonusStore.add(playerId, entry.amount())
+                        : bonusStore.set(playerId, entry.amount());
+                results.add(new BulkBonusUpdate.EntryResult(entry, playerId, change.current(), null));
+                if (!change.isChanged() && !changed.containsKey(playerId)) {
+                    // Значение не изменилось — пересчитывать права незачем
+                    continue;
+                }
+                // Если игрок встречается в пачке несколько раз, в событие попадает суммарное изменение
+                changed.merge(playerId, change, (first, last) -> new BonusStore.Change(first.previous(), last.current()));
+            }
+
+            environment.flush();
+            changed.forEach((playerId, change) -> afterChange(playerId, change, cause, RecalculationScheduler.Lane.BULK));
+
+            long elapsedMillis = (System.nanoTime() - start) / 1_000_000L;
+            return new BulkBonusUpdate.Result(results, elapsedMillis);
+        }, executor);
+    }
+
+    /**
+     * Всё, что зависит от сервера. В плагине реализуется поверх Bukkit, в симуляции — поверх подделок.
+     */
+    public interface Environment {
+
+        /** Игрок сейчас на этом сервере (его пересчёт идёт в приоритетной полосе). */
+        boolean isOnline(UUID playerId);
+
+        /** UUID игрока по нику или null. Может обращаться к базе, вызывается в фоновом пуле. */
+        UUID resolvePlayerId(String playerName);
+
+        /** Сохраняет накопленные изменения бонусов. */
+        void flush();
+
+        /** Бонус игрока изменён: оповещение других серверов и плагинов, индекс ников. */
+        void onChanged(UUID playerId, BonusStore.Change change, BonusWarpsChangeEvent.Cause cause);
+    }
+}
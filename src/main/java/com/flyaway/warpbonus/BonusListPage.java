@@ -0,0 +1,20 @@
+package com.flyaway.warpbonus;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Одна страница списка бонусных варпов.
+ */
+public record BonusListPage(List<Row> rows, int page, int pages, int total) {
+
+    public enum Sort {
+        /** По убыванию количества бонусов */
+        AMOUNT,
+        /** По нику игрока */
+        NAME
+    }
+
+    public record Row(UUID playerId, String playerName, int amount) {
+    }
+}
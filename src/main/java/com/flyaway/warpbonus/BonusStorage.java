@@ -0,0 +1,40 @@
+package com.flyaway.warpbonus;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Постоянное хранилище бонусных варпов.
+ * Значение 0 означает отсутствие записи: {@link #set} и {@link #saveBatch} с нулём удаляют игрока.
+ * Методы могут выполнять ввод-вывод и не должны вызываться из основного потока сервера.
+ */
+public interface BonusStorage {
+
+    String getName();
+
+    /** Загружает все записи целиком. */
+    Map<UUID, Integer> loadAll() throws IOException;
+
+    int get(UUID playerId) throws IOException;
+
+    void set(UUID playerId, int amount) throws IOException;
+
+    /** Атомарно прибавляет delta и возвращает новое значение (не меньше 0). */
+    int increment(UUID playerId, int delta) throws IOException;
+
+    /** Последовательно передаёт все записи, не собирая их в одну коллекцию. */
+    void list(ObjIntConsumer<UUID> consumer) throws IOException;
+
+    /** Сохраняет пачку изменений одной операцией. */
+    void saveBatch(Map<UUID, Integer> changes) throws IOException;
+
+    /** Были ли данные изменены в обход плагина с момента последней загрузки или сохранения. */
+    default boolean hasExternalChanges() {
+        return false;
+    }
+
+    default void close() {
+    }
+}
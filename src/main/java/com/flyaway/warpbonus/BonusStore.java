@@ -0,0 +1,394 @@
+package com.flyaway.warpbonus;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Резидентное хранилище бонусных варпов.
+ * Данные загружаются из {@link BonusStorage} один раз при запуске (и при явной перезагрузке),
+ * все чтения идут из памяти.
+ * <p>
+ * Изменения не пишутся сразу: запись помечается «грязной», а {@link #flush()}
+ * сохраняет все накопленные изменения одной пачкой.
+ * <p>
+ * Параллельно с основной картой поддерживается индекс, отсортированный по количеству бонусов,
+ * чтобы список можно было выдавать постранично без сортировки всех записей.
+ * <p>
+ * В режиме сквозной записи (общее хранилище нескольких серверов) каждое изменение сразу
+ * пишется в хранилище, а прибавление выполняется самим хранилищем. Если хранилище недоступно, прибавка
+ * копится как разница и при сбросе повторяется прибавлением, а не записью итогового значения:
+ * иначе запись затёрла бы прибавки, сделанные за это время другими серверами.
+ * <p>
+ * Изменения берут {@link #reloadLock} на чтение и друг другу не мешают; перезагрузка берёт его на запись,
+ * поэтому изменение не может попасть между снимком несохранённых записей и заменой карты.
+ */
+public class BonusStore {
+    private final BonusStorage storage;
+    private final Logger logger;
+    private final Map<UUID, Integer> bonuses = new ConcurrentHashMap<>();
+    private final Set<UUID> dirty = ConcurrentHashMap.newKeySet();
+    private final Map<UUID, Integer> pendingDeltas = new ConcurrentHashMap<>();
+    private final Set<Ranked> ranking = new ConcurrentSkipListSet<>();
+    private final Object[] writeLocks = new Object[64];
+    private final ReadWriteLock reloadLock = new ReentrantReadWriteLock();
+
+    private volatile boolean writeThrough;
+
+    public BonusStore(BonusStorage storage, Logger logger) {
+        this.storage = storage;
+        this.logger = logger;
+        for (int i = 0; i < writeLocks.length; i++) {
+            writeLocks[i] = new Object();
+        }
+    }
+
+    public void setWriteThrough(boolean writeThrough) {
+        this.writeThrough = writeThrough;
+    }
+
+    public BonusStorage getStorage() {
+        return storage;
+    }
+
+    /**
+     * Загружает все записи из хранилища. Если хранилище недоступно, бросает исключение
+     * и оставляет в памяти прежние данные.
+     */
+    public synchronized void load() throws IOException {
+        // Хранилище читается под блокировкой: иначе сквозная запись между чтением и заменой карты потеряется
+        reloadLock.writeLock().lock();
+        try {
+            Map<UUID, Integer> loaded = storage.loadAll();
+
+            // Ещё не сброшенные изменения переживают перезагрузку
+            Map<UUID, Integer> pending = new HashMap<>();
+            for (UUID playerId : dirty) {
+                pending.put(playerId, get(playerId));
+            }
+
+            bonuses.clear();
+            ranking.clear();
+            bonuses.putAll(loaded);
+            loaded.forEach((playerId, amount) -> ranking.add(new Ranked(amount, playerId)));
+            pending.forEach(this::set);
+            // Неотправленные прибавки уже учтены в памяти, но ещё не в хранилище
+            pendingDeltas.forEach((playerId, delta) -> bonuses.compute(playerId,
+                    (id, current) -> update(id, current, clamp((long) (current != null ? current : 0) + delta))));
+        } finally {
+            reloadLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Сохраняет накопленные изменения. Возвращает количество сохранённых записей.
+     */
+    public synchronized int flush() {
+        int retried = retryIncrements();
+        if (dirty.isEmpty()) return retried;
+
+        List<UUID> drained = new ArrayList<>(dirty.size());
+        for (UUID playerId : dirty) {
+            dirty.remove(playerId);
+            drained.add(playerId);
+        }
+
+        Map<UUID, Integer> changes = new HashMap<>(drained.size() * 2);
+        for (UUID playerId : drained) {
+            changes.put(playerId, get(playerId));
+        }
+
+        try {
+            storage.saveBatch(changes);
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Не удалось сохранить бонусные варпы в хранилище " + storage.getName(), e);
+            // Повторим при следующем сбросе
+            dirty.addAll(drained);
+            return retried;
+        }
+        return retried + drained.size();
+    }
+
+    /**
+     * Повторяет прибавки, не дошедшие до хранилища в режиме сквозной записи.
+     */
+    private int retryIncrements() {
+        int retried = 0;
+        for (UUID playerId : pendingDeltas.keySet()) {
+            synchronized (lockFor(playerId)) {
+                Integer delta = pendingDeltas.get(playerId);
+                if (delta == null) continue;
+                try {
+                    int amount = storage.increment(playerId, delta);
+                    pendingDeltas.remove(playerId);
+                    bonuses.compute(playerId, (id, current) -> update(id, current, amount));
+                    retried++;
+                } catch (IOException e) {
+                    logger.log(Level.SEVERE, "Не удалось повторить изменение бонусных варпов в хранилище " + storage.getName(), e);
+                    return retried;
+                }
+            }
+        }
+        return retried;
+    }
+
+    public int getPendingWrites() {
+        return dirty.size() + pendingDeltas.size();
+    }
+
+    /**
+     * Перечитывает хранилище, если оно было изменено в обход плагина.
+     */
+    public synchronized boolean reloadIfChanged() throws IOException {
+        if (!storage.hasExternalChanges()) {
+            return false;
+        }
+        load();
+        return true;
+    }
+
+    public int get(UUID playerId) {
+        return bonuses.getOrDefault(playerId, 0);
+    }
+
+    /**
+     * Устанавливает количество бонусов и возвращает изменение (прежнее и новое значение).
+     */
+    public Change set(UUID playerId, int amount) {
+        reloadLock.readLock().lock();
+        try {
+            return setValue(playerId, amount);
+        } finally {
+            reloadLock.readLock().unlock();
+        }
+    }
+
+    private Change setValue(UUID playerId, int amount) {
+        int[] previous = new int[1];
+        if (writeThrough) {
+            synchronized (lockFor(playerId)) {
+                bonuses.compute(playerId, (id, current) -> {
+                    previous[0] = current != null ? current : 0;
+                    return update(id, current, amount);
+                });
+                // Новое значение задаётся целиком, неотправленная прибавка больше не нужна
+                pendingDeltas.remove(playerId);
+                persist(playerId, amount);
+            }
+            return new Change(previous[0], Math.max(0, amount));
+        }
+        bonuses.compute(playerId, (id, current) -> {
+            previous[0] = current != null ? current : 0;
+            return update(id, current, amount);
+        });
+        dirty.add(playerId);
+        return new Change(previous[0], Math.max(0, amount));
+    }
+
+    /**
+     * Атомарно прибавляет delta (может быть отрицательной) и возвращает новое значение.
+     * Параллельные вызовы для одного игрока не теряют обновлений, для разных игроков не блокируют друг друга.
+     */
+    public int increment(UUID playerId, int delta) {
+        return add(playerId, delta).current();
+    }
+
+    /**
+     * То же, что {@link #increment}, но возвращает и прежнее значение.
+     */
+    public Change add(UUID playerId, int delta) {
+        reloadLock.readLock().lock();
+        try {
+            return addValue(playerId, delta);
+        } finally {
+            reloadLock.readLock().unlock();
+        }
+    }
+
+    private Change addValue(UUID playerId, int delta) {
+        if (writeThrough) {
+            synchronized (lockFor(playerId)) {
+                if (dirty.contains(playerId)) {
+                    // Итоговое значение игрока ещё ждёт записи после сбоя — прибавка войдёт в него
+                    Change change = addLocally(playerId, delta);
+                    dirty.add(playerId);
+                    return change;
+                }
+                int previous = get(playerId);
+                // Вместе с новой прибавкой отправляются и не дошедшие ранее
+                int total = delta + pendingDeltas.getOrDefault(playerId, 0);
+                try {
+                    int amount = storage.increment(playerId, total);
+                    pendingDeltas.remove(playerId);
+                    bonuses.compute(playerId, (id, current) -> update(id, current, amount));
+                    return new Change(previous, amount);
+                } catch (IOException e) {
+                    logger.log(Level.SEVERE, "Не удалось изменить бонусные варпы в хранилище " + storage.getName()
+                            + ", прибавка будет повторена при следующем сбросе", e);
+                    pendingDeltas.merge(playerId, delta, Integer::sum);
+                    return addLocally(playerId, delta);
+                }
+            }
+        }
+
+        Change change = addLocally(playerId, delta);
+        dirty.add(playerId);
+        return change;
+    }
+
+    private Change addLocally(UUID playerId, int delta) {
+        int[] result = new int[2];
+        bonuses.compute(playerId, (id, current) -> {
+            result[0] = current != null ? current : 0;
+            result[1] = clamp((long) result[0] + delta);
+            return update(id, current, result[1]);
+        });
+        return new Change(result[0], result[1]);
+    }
+
+    private static int clamp(long amount) {
+        return (int) Math.max(0, Math.min(Integer.MAX_VALUE, amount));
+    }
+
+    /**
+     * Устанавливает новое значение, только если текущее равно ожидаемому.
+     */
+    public boolean compareAndSet(UUID playerId, int expected, int amount) {
+        reloadLock.readLock().lock();
+        try {
+            return compareAndSetValue(playerId, expected, amount);
+        } finally {
+            reloadLock.readLock().unlock();
+        }
+    }
+
+    private boolean compareAndSetValue(UUID playerId, int expected, int amount) {
+        if (writeThrough) {
+            synchronized (lockFor(playerId)) {
+                if (get(playerId) != expected) {
+                    return false;
+                }
+                bonuses.compute(playerId, (id, current) -> update(id, current, amount));
+                pendingDeltas.remove(playerId);
+                persist(playerId, amount);
+                return true;
+            }
+        }
+
+        boolean[] updated = new boolean[1];
+        bonuses.compute(playerId, (id, current) -> {
+            if ((current != null ? current : 0) != expected) {
+                return current;
+            }
+            updated[0] = true;
+            return update(id, current, amount);
+        });
+        if (updated[0]) {
+            dirty.add(playerId);
+        }
+        return updated[0];
+    }
+
+    /**
+     * Перечитывает значение игрока из хранилища (оно было изменено другим сервером).
+     */
+    public Change refresh(UUID playerId) throws IOException {
+        reloadLock.readLock().lock();
+        try {
+            synchronized (lockFor(playerId)) {
+                int previous = get(playerId);
+                // Своя прибавка, не дошедшая до хранилища, остаётся учтённой
+                int amount = clamp((long) storage.get(playerId) + pendingDeltas.getOrDefault(playerId, 0));
+                bonuses.compute(playerId, (id, current) -> update(id, current, amount));
+                return new Change(previous, amount);
+            }
+        } finally {
+            reloadLock.readLock().unlock();
+        }
+    }
+
+    private void persist(UUID playerId, int amount) {
+        try {
+            storage.set(playerId, amount);
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Не удалось сохранить бонусные варпы в хранилище " + storage.getName()
+                    + ", изменение будет сохранено позже", e);
+            dirty.add(playerId);
+        }
+    }
+
+    private Object lockFor(UUID playerId) {
+        return writeLocks[(playerId.hashCode() & 0x7fffffff) % writeLocks.length];
+    }
+
+    /**
+     * Возвращает одну страницу записей, отсортированных по убыванию количества бонусов.
+     */
+    public List<Map.Entry<UUID, Integer>> page(int offset, int limit) {
+        List<Map.Entry<UUID, Integer>> result = new ArrayList<>(limit);
+        int index = 0;
+        for (Ranked ranked : ranking) {
+            if (index++ < offset) continue;
+            if (result.size() >= limit) break;
+            result.add(Map.entry(ranked.playerId(), ranked.amount()));
+        }
+        return result;
+    }
+
+    /**
+     * Вызывается внутри compute, поэтому индекс меняется атомарно вместе со значением игрока.
+     */
+    private Integer update(UUID playerId, Integer current, int amount) {
+        if (current != null) {
+            ranking.remove(new Ranked(current, playerId));
+        }
+        if (amount <= 0) {
+            return null;
+        }
+        ranking.add(new Ranked(amount, playerId));
+        return amount;
+    }
+
+    public Map<UUID, Integer> view() {
+        return Collections.unmodifiableMap(bonuses);
+    }
+
+    public int size() {
+        return bonuses.size();
+    }
+
+    public void close() {
+        flush();
+        storage.close();
+    }
+
+    /**
+     * Изменение бонуса одного игрока.
+     */
+    public record Change(int previous, int current) {
+
+        public boolean isChanged() {
+            return previous != current;
+        }
+    }
+
+    private record Ranked(int amount, UUID playerId) implements Comparable<Ranked> {
+
+        @Override
+        public int compareTo(Ranked other) {
+            int byAmount = Integer.compare(other.amount, amount);
+            return byAmount != 0 ? byAmount : playerId.compareTo(other.playerId);
+        }
+    }
+}
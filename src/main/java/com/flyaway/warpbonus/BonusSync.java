@@ -0,0 +1,89 @@
+package com.flyaway.warpbonus;
+
+import java.io.IOException;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Синхронизация бонусов между серверами с общим хранилищем.
+ * После каждого изменения рассылается сообщение {@code <сервер>;<UUID>} — само значение не передаётся:
+ * получатели перечитывают запись игрока из общего хранилища, поэтому порядок доставки сообщений не важен.
+ * Затем пересчитываются права только этого игрока.
+ */
+public class BonusSync {
+    private final String serverId = UUID.randomUUID().toString();
+    private final BonusStore bonusStore;
+    private final Executor executor;
+    private final BiConsumer<UUID, BonusStore.Change> onChanged;
+    private final Logger logger;
+    private final SyncTransport transport;
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong received = new AtomicLong();
+    private volatile boolean warnedUnavailable;
+
+    public BonusSync(BonusStore bonusStore, Executor executor, BiConsumer<UUID, BonusStore.Change> onChanged, Logger logger,
+                     Function<Consumer<String>, SyncTransport> transportFactory) {
+        this.bonusStore = bonusStore;
+        this.executor = executor;
+        this.onChanged = onChanged;
+        this.logger = logger;
+        this.transport = transportFactory.apply(this::receive);
+    }
+
+    /**
+     * Сообщает остальным серверам, что бонус игрока изменился. Вызывать после записи в общее хранилище.
+     */
+    public void publish(UUID playerId) {
+        if (transport.send(serverId + ";" + playerId)) {
+            sent.incrementAndGet();
+        } else if (!warnedUnavailable) {
+            warnedUnavailable = true;
+            logger.warning("Канал синхронизации " + transport.getName() + " недоступен, другие серверы не узнают об изменениях");
+        }
+    }
+
+    private void receive(String payload) {
+        int separator = payload.indexOf(';');
+        if (separator < 0) return;
+        if (payload.substring(0, separator).equals(serverId)) return;
+
+        UUID playerId;
+        try {
+            playerId = UUID.fromString(payload.substring(separator + 1));
+        } catch (IllegalArgumentException e) {
+            logger.warning("Некорректное сообщение синхронизации: " + payload);
+            return;
+        }
+
+        received.incrementAndGet();
+        executor.execute(() -> {
+            try {
+                onChanged.accept(playerId, bonusStore.refresh(playerId));
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Не удалось обновить бонусные варпы игрока " + playerId + " после изменения на другом сервере", e);
+            }
+        });
+    }
+
+    public String getTransportName() {
+        return transport.getName();
+    }
+
+    public long getSent() {
+        return sent.get();
+    }
+
+    public long getReceived() {
+        return received.get();
+    }
+
+    public void close() {
+        transport.close();
+    }
+}
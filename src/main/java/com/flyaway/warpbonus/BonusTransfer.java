@@ -0,0 +1,309 @@
+package com.flyaway.warpbonus;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Потоковый экспорт и импорт бонусов в построчном формате {@code <UUID> <количество>}
+ * (файлы с расширением .gz сжимаются). Записи читаются и пишутся по одной, весь набор в памяти не собирается.
+ * <p>
+ * Импорт применяет только записи, значение которых отличается от текущего, пачками через
+ * {@link WarpBonusManager#applyBulk}: каждая пачка сохраняется одной операцией, и права пересчитываются
+ * только у изменённых игроков. Понимает и формат bonus_warps.yml ({@code <UUID>:<количество>}).
+ * <p>
+ * Замена удаляет бонусы всех, кого нет в файле, поэтому сначала файл проверяется целиком ({@link #planReplace}):
+ * пустой файл или файл с некорректными строками не применяется.
+ */
+public class BonusTransfer {
+    static final String HEADER = "# WarpBonus export v1: <UUID> <количество>";
+    private static final int IMPORT_BATCH_SIZE = 1000;
+
+    private final BonusStore bonusStore;
+    private final File dataFolder;
+    private final Function<List<BulkBonusUpdate.Entry>, CompletableFuture<BulkBonusUpdate.Result>> applier;
+    private final Logger logger;
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "WarpBonus-Transfer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * @param applier устанавливает пачку значений (режим SET) и пересчитывает права изменённых игроков
+     */
+    public BonusTransfer(BonusStore bonusStore, File dataFolder,
+                         Function<List<BulkBonusUpdate.Entry>, CompletableFuture<BulkBonusUpdate.Result>> applier, Logger logger) {
+        this.bonusStore = bonusStore;
+        this.dataFolder = dataFolder;
+        this.applier = applier;
+        this.logger = logger;
+    }
+
+    /**
+     * Файл внутри папки плагина. Пути за её пределами не принимаются.
+     */
+    public File resolve(String name) throws IOException {
+        File file = new File(dataFolder, name);
+        if (!file.getCanonicalPath().startsWith(dataFolder.getCanonicalPath() + File.separator)) {
+            throw new IllegalArgumentException("Файл должен находиться в папке плагина");
+        }
+        return file;
+    }
+
+    public CompletableFuture<ExportResult> export(File target) {
+        return runExclusive(() -> {
+            long start = System.nanoTime();
+            File parent = target.getAbsoluteFile().getParentFile();
+            if (parent != null && !parent.exists()) {
+                parent.mkdirs();
+            }
+
+            Path temp = target.toPath().resolveSibling(target.getName() + ".tmp");
+            int count = 0;
+            try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(openOutput(temp, target.getName()), StandardCharsets.UTF_8))) {
+                writer.write(HEADER);
+                writer.newLine();
+                for (Map.Entry<UUID, Integer> entry : bonusStore.view().entrySet()) {
+                    writer.write(entry.getKey().toString());
+                    writer.write(' ');
+                    writer.write(Integer.toString(entry.getValue()));
+                    writer.newLine();
+                    count++;
+                }
+            }
+            try {
+                Files.move(temp, target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+
+            long elapsedMillis = (System.nanoTime() - start) / 1_000_000L;
+            logger.info("Экспортировано записей о бонусных варпах: " + count + " в " + target.getName() + " за " + elapsedMillis + " мс");
+            return new ExportResult(target, count, target.length(), elapsedMillis);
+        });
+    }
+
+    /**
+     * Проверяет файл для импорта с заменой, ничего не меняя: сколько записей прочитано, сколько строк некорректно
+     * и сколько игроков лишится бонусов.
+     */
+    public CompletableFuture<ReplacePlan> planReplace(File source) {
+        return runExclusive(() -> scan(source));
+    }
+
+    /**
+     * @param replace игроки, которых нет в файле, лишаются бонусов; иначе их значения не меняются.
+     *                Замена выполняется, только если {@link ReplacePlan#refusal()} файла пуст
+     */
+    public CompletableFuture<ImportResult> importFrom(File source, boolean replace) {
+        return runExclusive(() -> {
+            long start = System.nanoTime();
+            if (replace) {
+                ReplacePlan plan = scan(source);
+                if (plan.refusal() != null) {
+                    throw new IllegalStateException(plan.refusal());
+                }
+                logger.info("Импорт с заменой из " + source.getName() + ": записей " + plan.read()
+                        + ", будут лишены бонусов " + plan.toRemove() + " игроков");
+            }
+
+            Set<UUID> seen = replace ? new HashSet<>() : null;
+            List<BulkBonusUpdate.Entry> batch = new ArrayList<>(IMPORT_BATCH_SIZE);
+            int[] read = {0};
+            int[] changed = {0};
+
+            int invalid = readRecords(source, (playerId, amount) -> {
+                read[0]++;
+                if (seen != null) {
+                    seen.add(playerId);
+                }
+                if (bonusStore.get(playerId) != amount) {
+                    batch.add(BulkBonusUpdate.Entry.of(playerId, amount));
+                    if (batch.size() >= IMPORT_BATCH_SIZE) {
+                        changed[0] += apply(batch);
+                    }
+                }
+            });
+            changed[0] += apply(batch);
+
+            int removed = 0;
+            if (seen != null) {
+                for (UUID playerId : bonusStore.view().keySet()) {
+                    if (!seen.contains(playerId)) {
+                        batch.add(BulkBonusUpdate.Entry.of(playerId, 0));
+                        if (batch.size() >= IMPORT_BATCH_SIZE) {
+                            removed += apply(batch);
+                        }
+                    }
+                }
+                removed += apply(batch);
+            }
+
+            long elapsedMillis = (System.nanoTime() - start) / 1_000_000L;
+            logger.info("Импорт бонусных варпов из " + source.getName() + (replace ? " (замена)" : " (слияние)")
+                    + ": прочитано " + read[0] + ", изменено " + changed[0] + ", удалено " + removed
+                    + ", некорректных строк " + invalid + ", время " + elapsedMillis + " мс");
+            return new ImportResult(read[0], changed[0], read[0] - changed[0], removed, invalid, elapsedMillis);
+        });
+    }
+
+    public boolean isRunning() {
+        return running.get();
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private ReplacePlan scan(File source) throws IOException {
+        Set<UUID> seen = new HashSet<>();
+        int invalid = readRecords(source, (playerId, amount) -> seen.add(playerId));
+        int toRemove = 0;
+        for (UUID playerId : bonusStore.view().keySet()) {
+            if (!seen.contains(playerId)) {
+                toRemove++;
+            }
+        }
+        return new ReplacePlan(seen.size(), invalid, toRemove);
+    }
+
+    /**
+     * Читает файл построчно и передаёт корректные записи в consumer. Возвращает число некорректных строк.
+     */
+    private int readRecords(File source, RecordConsumer consumer) throws IOException {
+        int invalid = 0;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(openInput(source), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) continue;
+
+                String[] parts = line.replace("'", "").replace("\"", "").split("[\\s:]+");
+                UUID playerId;
+                int amount;
+                try {
+                    playerId = UUID.fromString(parts[0]);
+                    amount = Integer.parseInt(parts[1]);
+                } catch (RuntimeException e) {
+                    if (invalid++ < 10) {
+                        logger.warning("Пропущена некорректная строка в " + source.getName() + ": " + line);
+                    }
+                    continue;
+                }
+                if (amount < 0) {
+                    invalid++;
+                    continue;
+                }
+                consumer.accept(playerId, amount);
+            }
+        }
+        return invalid;
+    }
+
+    private int apply(List<BulkBonusUpdate.Entry> batch) {
+        if (batch.isEmpty()) return 0;
+        int applied = (int) applier.apply(new ArrayList<>(batch)).join().successCount();
+        batch.clear();
+        return applied;
+    }
+
+    private <T> CompletableFuture<T> runExclusive(IoTask<T> task) {
+        if (!running.compareAndSet(false, true)) {
+            return CompletableFuture.failedFuture(new IllegalStateException("Экспорт или импорт уже выполняется"));
+        }
+        CompletableFuture<T> result = new CompletableFuture<>();
+        executor.execute(() -> {
+            try {
+                result.complete(task.run());
+            } catch (IOException | RuntimeException e) {
+                result.completeExceptionally(e);
+            } finally {
+                running.set(false);
+            }
+        });
+        return result;
+    }
+
+    private static OutputStream openOutput(Path path, String name) throws IOException {
+        OutputStream output = new BufferedOutputStream(Files.newOutputStream(path), 1 << 16);
+        return name.endsWith(".gz") ? new GZIPOutputStream(output, 1 << 16) : output;
+    }
+
+    private static InputStream openInput(File file) throws IOException {
+        InputStream input = Files.newInputStream(file.toPath());
+        return file.getName().endsWith(".gz") ? new GZIPInputStream(input, 1 << 16) : input;
+    }
+
+    @FunctionalInterface
+    private interface IoTask<T> {
+        T run() throws IOException;
+    }
+
+    @FunctionalInterface
+    private interface RecordConsumer {
+        void accept(UUID playerId, int amount);
+    }
+
+    public record ExportResult(File file, int records, long bytes, long elapsedMillis) {
+    }
+
+    /**
+     * @param unchanged записи, совпавшие с текущим значением (права не пересчитывались)
+     * @param removed   игроки, лишённые бонусов в режиме замены
+     */
+    public record ImportResult(int read, int changed, int unchanged, int removed, int invalid, long elapsedMillis) {
+    }
+
+    /**
+     * @param read     корректных записей (разных игроков) в файле
+     * @param toRemove игроков с бонусами, которых нет в файле: замена лишит их бонусов
+     */
+    public record ReplacePlan(int read, int invalid, int toRemove) {
+
+        /**
+         * Почему замену нельзя применять, или null, если можно.
+         */
+        public String refusal() {
+            if (read == 0) {
+                return "в файле нет ни одной корректной записи, замена удалила бы все бонусы";
+            }
+            if (invalid > 0) {
+                return "некорректных строк в файле: " + invalid + ", исправьте файл или используйте merge";
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.flyaway.warpbonus;
+
+import org.bukkit.Bukkit;
+import org.bukkit.event.Event;
+import org.bukkit.event.HandlerList;
+
+import java.util.UUID;
+
+/**
+ * Бонусные варпы игрока изменились. Вызывается после изменения, отменить его нельзя.
+ * Может вызываться как из основного, так и из асинхронного потока (см. {@link #isAsynchronous()}).
+ * Пересчёт прав игрока к этому моменту только поставлен в очередь.
+ */
+public class BonusWarpsChangeEvent extends Event {
+    private static final HandlerList HANDLERS = new HandlerList();
+
+    private final UUID playerId;
+    private final int previousAmount;
+    private final int newAmount;
+    private final Cause cause;
+
+    public BonusWarpsChangeEvent(UUID playerId, int previousAmount, int newAmount, Cause cause) {
+        super(!Bukkit.isPrimaryThread());
+        this.playerId = playerId;
+        this.previousAmount = previousAmount;
+        this.newAmount = newAmount;
+        this.cause = cause;
+    }
+
+    public UUID getPlayerId() {
+        return playerId;
+    }
+
+    public int getPreviousAmount() {
+        return previousAmount;
+    }
+
+    public int getNewAmount() {
+        return newAmount;
+    }
+
+    public Cause getCause() {
+        return cause;
+    }
+
+    @Override
+    public HandlerList getHandlers() {
+        return HANDLERS;
+    }
+
+    public static HandlerList getHandlerList() {
+        return HANDLERS;
+    }
+
+    public enum Cause {
+        /** Команда /warpbonus add или set */
+        COMMAND,
+        /** Массовая выдача /warpbonus bulk */
+        BULK,
+        /** Импорт /warpbonus import */
+        IMPORT,
+        /** Другой плагин через {@link WarpBonusService} */
+        API,
+        /** Выдача временных бонусов */
+        TEMPORARY_GRANT,
+        /** Истёк срок временных бонусов */
+        TEMPORARY_EXPIRED,
+        /** Изменение на другом сервере сети */
+        SYNC
+    }
+}
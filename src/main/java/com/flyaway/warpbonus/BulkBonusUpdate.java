@@ -0,0 +1,59 @@
+package com.flyaway.warpbonus;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Типы для массовой выдачи бонусных варпов ({@link WarpBonusManager#applyBulk}).
+ */
+public final class BulkBonusUpdate {
+
+    private BulkBonusUpdate() {
+    }
+
+    public enum Mode {
+        /** Прибавить количество к текущему бонусу */
+        ADD,
+        /** Установить точное количество */
+        SET
+    }
+
+    /**
+     * Одна запись пачки: игрок задаётся либо ником, либо UUID.
+     */
+    public record Entry(String playerName, UUID playerId, int amount) {
+
+        public static Entry of(String playerName, int amount) {
+            return new Entry(playerName, null, amount);
+        }
+
+        public static Entry of(UUID playerId, int amount) {
+            return new Entry(null, playerId, amount);
+        }
+
+        public String label() {
+            return playerName != null ? playerName : playerId.toString();
+        }
+    }
+
+    /**
+     * Результат по одной записи: при успехе — новое количество бонусов, иначе — причина ошибки.
+     */
+    public record EntryResult(Entry entry, UUID playerId, int newAmount, String error) {
+
+        public boolean isSuccess() {
+            return error == null;
+        }
+    }
+
+    public record Result(List<EntryResult> entries, long elapsedMillis) {
+
+        public long successCount() {
+            return entries.stream().filter(EntryResult::isSuccess).count();
+        }
+
+        public long failureCount() {
+            return entries.size() - successCount();
+        }
+    }
+}
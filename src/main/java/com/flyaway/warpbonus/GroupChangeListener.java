@@ -6,17 +6,28 @@ import net.luckperms.api.event.EventSubscription;
 import net.luckperms.api.event.user.track.UserPromoteEvent;
 import net.luckperms.api.event.user.track.UserDemoteEvent;
 import net.luckperms.api.event.node.NodeAddEvent;
+import net.luckperms.api.event.node.NodeClearEvent;
 import net.luckperms.api.event.node.NodeRemoveEvent;
+import net.luckperms.api.event.group.GroupCreateEvent;
+import net.luckperms.api.event.group.GroupDeleteEvent;
+import net.luckperms.api.event.group.GroupLoadEvent;
+import net.luckperms.api.event.sync.PostSyncEvent;
+import net.luckperms.api.event.user.UserDataRecalculateEvent;
+import net.luckperms.api.event.user.UserUnloadEvent;
+import net.luckperms.api.model.group.Group;
 import net.luckperms.api.model.user.User;
 import net.luckperms.api.node.NodeType;
 import org.bukkit.Bukkit;
 import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
+import org.bukkit.event.player.AsyncPlayerPreLoginEvent;
 import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.UUID;
+import java.util.Set;
 
 public class GroupChangeListener implements Listener {
     private final WarpBonusManager bonusManager;
@@ -37,6 +48,13 @@ public class GroupChangeListener implements Listener {
                 subscriptions.add(eventBus.subscribe(UserDemoteEvent.class, this::onUserDemote));
                 subscriptions.add(eventBus.subscribe(NodeAddEvent.class, this::onNodeAdd));
                 subscriptions.add(eventBus.subscribe(NodeRemoveEvent.class, this::onNodeRemove));
+                subscriptions.add(eventBus.subscribe(NodeClearEvent.class, this::onNodeClear));
+                subscriptions.add(eventBus.subscribe(GroupCreateEvent.class, this::onGroupCreate));
+                subscriptions.add(eventBus.subscribe(GroupLoadEvent.class, this::onGroupLoad));
+                subscriptions.add(eventBus.subscribe(GroupDeleteEvent.class, this::onGroupDelete));
+                subscriptions.add(eventBus.subscribe(PostSyncEvent.class, this::onPostSync));
+                subscriptions.add(eventBus.subscribe(UserDataRecalculateEvent.class, this::onUserDataRecalculate));
+                subscriptions.add(eventBus.subscribe(UserUnloadEvent.class, this::onUserUnload));
 
                 WarpBonusPlugin.getInstance().getLogger().info("LuckPerms события зарегистрированы");
             }
@@ -70,9 +88,14 @@ public class GroupChangeListener implements Listener {
         }
 
         // Фильтруем: только изменения варп-пермишенов в группах (НЕ у пользователей!)
-        if (event.getNode().getKey().startsWith("axplayerwarps.warps.") &&
-                event.getTarget() instanceof net.luckperms.api.model.group.Group group) {
-            updateAllUsersInGroup(group.getName());
+        if (event.getNode().getKey().startsWith(WarpBonusManager.WARP_PERMISSION_PREFIX) &&
+                event.getTarget() instanceof Group group) {
+            onGroupWarpLimitChanged(group);
+        }
+
+        // Изменилось наследование группы — меняется и состав участников
+        if (event.getTarget() instanceof Group && event.getNode().getType() == NodeType.INHERITANCE) {
+            rebuildMembershipIndex();
         }
     }
 
@@ -83,65 +106,113 @@ public class GroupChangeListener implements Listener {
         }
 
         // Фильтруем: только изменения варп-пермишенов в группах (НЕ у пользователей!)
-        if (event.getNode().getKey().startsWith("axplayerwarps.warps.") &&
-                event.getTarget() instanceof net.luckperms.api.model.group.Group group) {
+        if (event.getNode().getKey().startsWith(WarpBonusManager.WARP_PERMISSION_PREFIX) &&
+                event.getTarget() instanceof Group group) {
+            onGroupWarpLimitChanged(group);
+        }
+
+        // Изменилось наследование группы — меняется и состав участников
+        if (event.getTarget() instanceof Group && event.getNode().getType() == NodeType.INHERITANCE) {
+            rebuildMembershipIndex();
+        }
+    }
+
+    private void onNodeClear(NodeClearEvent event) {
+        if (event.getTarget() instanceof Group group) {
+            onGroupWarpLimitChanged(group);
+            rebuildMembershipIndex();
+        }
+    }
+
+    private void onGroupCreate(GroupCreateEvent event) {
+        bonusManager.getGroupLimitIndex().update(event.getGroup());
+    }
+
+    private void onGroupLoad(GroupLoadEvent event) {
+        // Группа перечитана из хранилища LuckPerms: её лимит мог измениться на другом сервере
+        onGroupWarpLimitChanged(event.getGroup());
+    }
+
+    private void onGroupDelete(GroupDeleteEvent event) {
+        GroupLimitIndex index = bonusManager.getGroupLimitIndex();
+        if (index.getLimit(event.getGroupName()) > 0) {
+            index.remove(event.getGroupName());
+            updateAllUsersInGroup(event.getGroupName());
+        }
+    }
+
+    private void onPostSync(PostSyncEvent event) {
+        // После /lp sync или синхронизации с другим сервером пересчитываются участники групп с изменившимся лимитом,
+        // когда состав групп уже перестроен
+        Set<String> changed = bonusManager.getGroupLimitIndex().rebuild();
+        rebuildMembershipIndex(() -> changed.forEach(this::updateAllUsersInGroup));
+    }
+
+    private void onGroupWarpLimitChanged(Group group) {
+        GroupLimitIndex index = bonusManager.getGroupLimitIndex();
+        int previous = index.getLimit(group.getName());
+        index.update(group);
+        if (index.getLimit(group.getName()) != previous) {
             updateAllUsersInGroup(group.getName());
         }
     }
 
     private void updateAllUsersInGroup(String groupName) {
+        bonusManager.recalculateGroup(groupName);
+    }
+
+    private void onUserDataRecalculate(UserDataRecalculateEvent event) {
+        bonusManager.getMembershipIndex().update(event.getUser());
+    }
+
+    private void onUserUnload(UserUnloadEvent event) {
+        bonusManager.getMembershipIndex().remove(event.getUser().getUniqueId());
+    }
+
+    private void rebuildMembershipIndex() {
+        rebuildMembershipIndex(() -> {});
+    }
+
+    /**
+     * @param then выполняется после перестройки, в том же асинхронном потоке
+     */
+    private void rebuildMembershipIndex(Runnable then) {
         Bukkit.getScheduler().runTaskAsynchronously(WarpBonusPlugin.getInstance(), () -> {
-            try {
-                net.luckperms.api.LuckPerms luckPerms = Bukkit.getServicesManager().load(net.luckperms.api.LuckPerms.class);
-                if (luckPerms == null) return;
-
-                int updatedCount = 0;
-                for (User user : luckPerms.getUserManager().getLoadedUsers()) {
-                    if (user.getPrimaryGroup().equals(groupName) ||
-                        user.getInheritedGroups(net.luckperms.api.query.QueryOptions.nonContextual())
-                            .stream()
-                            .anyMatch(group -> group.getName().equals(groupName))) {
-
-                        UUID playerId = user.getUniqueId();
-                        String playerName = user.getUsername();
-
-                        if (playerName != null && !playerName.isEmpty()) {
-                            Bukkit.getScheduler().runTask(WarpBonusPlugin.getInstance(), () -> {
-                                bonusManager.updatePlayerPermissions(playerId, playerName);
-                            });
-                            updatedCount++;
-                        }
-                    }
-                }
-
-                if (updatedCount > 0) {
-                    WarpBonusPlugin.getInstance().getLogger().info("Обновлены варпы для " + updatedCount + " пользователей группы " + groupName);
-                }
-
-            } catch (Exception e) {
-                WarpBonusPlugin.getInstance().getLogger().warning("Ошибка при обновлении пользователей группы " + groupName + ": " + e.getMessage());
+            LuckPerms luckPerms = Bukkit.getServicesManager().load(LuckPerms.class);
+            if (luckPerms != null) {
+                bonusManager.getMembershipIndex().rebuild(luckPerms.getUserManager());
             }
+            then.run();
         });
     }
 
+    /**
+     * LuckPerms загружает пользователя на приоритете LOW этого же события, поэтому к HIGHEST он уже
+     * доступен и лимит можно пересчитать до появления игрока. Обработчик ждёт пересчёта в потоке
+     * подключения (не дольше recalculation.login-timeout-ms), поэтому он не на MONITOR, который только
+     * наблюдает за итогом. Если вход уже запрещён (бан, вайтлист), ничего не делаем.
+     */
+    @EventHandler(priority = EventPriority.HIGHEST)
+    public void onPreLogin(AsyncPlayerPreLoginEvent event) {
+        if (event.getLoginResult() != AsyncPlayerPreLoginEvent.Result.ALLOWED) return;
+
+        bonusManager.rememberName(event.getUniqueId(), event.getName());
+        bonusManager.recalculateOnLogin(event.getUniqueId());
+    }
+
     @EventHandler
     public void onPlayerJoin(PlayerJoinEvent event) {
-        // Обновляем права при входе игрока
-        Bukkit.getScheduler().runTaskLater(WarpBonusPlugin.getInstance(), () -> {
-            UUID playerId = event.getPlayer().getUniqueId();
-            String playerName = event.getPlayer().getName();
-            bonusManager.updatePlayerPermissions(playerId, playerName);
-        }, 20L);
+        bonusManager.updateSuggestion(event.getPlayer().getUniqueId(), true);
+        bonusManager.rememberName(event.getPlayer().getUniqueId(), event.getPlayer().getName());
+        bonusManager.verifyOnJoin(event.getPlayer().getUniqueId());
     }
 
-    private void schedulePermissionUpdate(User user) {
-        Bukkit.getScheduler().runTaskLater(WarpBonusPlugin.getInstance(), () -> {
-            UUID playerId = user.getUniqueId();
-            String playerName = user.getUsername();
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerQuit(PlayerQuitEvent event) {
+        bonusManager.updateSuggestion(event.getPlayer().getUniqueId(), false);
+    }
 
-            if (playerName != null && !playerName.isEmpty()) {
-                bonusManager.updatePlayerPermissions(playerId, playerName);
-            }
-        }, 20L);
+    private void schedulePermissionUpdate(User user) {
+        bonusManager.requestRecalculation(user.getUniqueId());
     }
 }
@@ -0,0 +1,100 @@
+package com.flyaway.warpbonus;
+
+import net.luckperms.api.model.group.Group;
+import net.luckperms.api.model.group.GroupManager;
+import net.luckperms.api.model.user.User;
+import net.luckperms.api.node.Node;
+import net.luckperms.api.query.QueryOptions;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Предрасчитанный индекс «группа -> максимальный axplayerwarps.warps.N из собственных прав группы».
+ * Строится при запуске и обновляется по событиям LuckPerms, так что лимит пользователя
+ * считается по индексу без разбора всех прав групп.
+ */
+public class GroupLimitIndex {
+    private final GroupManager groupManager;
+    private final Map<String, Integer> limits = new ConcurrentHashMap<>();
+
+    public GroupLimitIndex(GroupManager groupManager) {
+        this.groupManager = groupManager;
+    }
+
+    /**
+     * Перестраивает индекс по загруженным группам и возвращает имена групп, лимит которых изменился
+     * (в том числе появившихся и исчезнувших). Индекс не очищается: во время перестройки лимиты
+     * неизменившихся групп остаются доступны.
+     */
+    public Set<String> rebuild() {
+        Map<String, Integer> rebuilt = new HashMap<>();
+        for (Group group : groupManager.getLoadedGroups()) {
+            int limit = getWarpLimitFromNodes(group.getNodes());
+            if (limit > 0) {
+                rebuilt.put(group.getName(), limit);
+            }
+        }
+
+        Set<String> changed = new HashSet<>();
+        for (String groupName : limits.keySet()) {
+            if (!rebuilt.containsKey(groupName)) {
+                limits.remove(groupName);
+                changed.add(groupName);
+            }
+        }
+        rebuilt.forEach((groupName, limit) -> {
+            if (!limit.equals(limits.put(groupName, limit))) {
+                changed.add(groupName);
+            }
+        });
+        return changed;
+    }
+
+    public void update(Group group) {
+        int limit = getWarpLimitFromNodes(group.getNodes());
+        if (limit > 0) {
+            limits.put(group.getName(), limit);
+        } else {
+            limits.remove(group.getName());
+        }
+    }
+
+    public void remove(String groupName) {
+        limits.remove(groupName);
+    }
+
+    public int getLimit(String groupName) {
+        return limits.getOrDefault(groupName, 0);
+    }
+
+    public int size() {
+        return limits.size();
+    }
+
+    public int getUserLimit(User user) {
+        int maxLimit = getLimit(user.getPrimaryGroup());
+        for (Group inheritedGroup : user.getInheritedGroups(QueryOptions.nonContextual())) {
+            maxLimit = Math.max(maxLimit, getLimit(inheritedGroup.getName()));
+        }
+        return maxLimit;
+    }
+
+    static int getWarpLimitFromNodes(Collection<Node> nodes) {
+        int limit = 0;
+        for (Node node : nodes) {
+            String key = node.getKey();
+            if (key.startsWith(WarpBonusManager.WARP_PERMISSION_PREFIX) && node.getValue()) {
+                try {
+                    limit = Math.max(limit, Integer.parseInt(key.substring(WarpBonusManager.WARP_PERMISSION_PREFIX.length())));
+                } catch (NumberFormatException ignored) {
+                }
+            }
+        }
+        return limit;
+    }
+}
@@ -0,0 +1,83 @@
+package com.flyaway.warpbonus;
+
+import net.luckperms.api.model.group.Group;
+import net.luckperms.api.model.user.User;
+import net.luckperms.api.model.user.UserManager;
+import net.luckperms.api.query.QueryOptions;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Обратный индекс «группа -> загруженные пользователи», учитывающий наследование групп.
+ * Обновляется по событиям пересчёта данных пользователей LuckPerms, поэтому при изменении
+ * группы не нужно перебирать всех загруженных пользователей.
+ */
+public class GroupMembershipIndex {
+    private final Map<String, Set<UUID>> members = new ConcurrentHashMap<>();
+    private final Map<UUID, Set<String>> userGroups = new ConcurrentHashMap<>();
+
+    public void rebuild(UserManager userManager) {
+        members.clear();
+        userGroups.clear();
+        for (User user : userManager.getLoadedUsers()) {
+            update(user);
+        }
+    }
+
+    public void update(User user) {
+        Set<String> groups = new HashSet<>();
+        groups.add(user.getPrimaryGroup());
+        for (Group group : user.getInheritedGroups(QueryOptions.nonContextual())) {
+            groups.add(group.getName());
+        }
+
+        UUID playerId = user.getUniqueId();
+        Set<String> previous = userGroups.put(playerId, groups);
+        if (previous != null) {
+            for (String groupName : previous) {
+                if (!groups.contains(groupName)) {
+                    removeMember(groupName, playerId);
+                }
+            }
+        }
+        for (String groupName : groups) {
+            members.compute(groupName, (name, groupMembers) -> {
+                if (groupMembers == null) {
+                    groupMembers = ConcurrentHashMap.newKeySet();
+                }
+                groupMembers.add(playerId);
+                return groupMembers;
+            });
+        }
+    }
+
+    public void remove(UUID playerId) {
+        Set<String> previous = userGroups.remove(playerId);
+        if (previous != null) {
+            for (String groupName : previous) {
+                removeMember(groupName, playerId);
+            }
+        }
+    }
+
+    public Set<UUID> getMembers(String groupName) {
+        Set<UUID> groupMembers = members.get(groupName);
+        return groupMembers != null ? Set.copyOf(groupMembers) : Collections.emptySet();
+    }
+
+    public int getIndexedUsers() {
+        return userGroups.size();
+    }
+
+    private void removeMember(String groupName, UUID playerId) {
+        members.computeIfPresent(groupName, (name, groupMembers) -> {
+            groupMembers.remove(playerId);
+            return groupMembers.isEmpty() ? null : groupMembers;
+        });
+    }
+}
@@ -0,0 +1,19 @@
+package com.flyaway.warpbonus;
+
+/**
+ * JMX-представление {@link LatencyHistogram}. Все времена — в миллисекундах.
+ */
+public interface LatencyHistogramMBean {
+
+    long getCount();
+
+    double getMeanMillis();
+
+    double getP50Millis();
+
+    double getP95Millis();
+
+    double getP99Millis();
+
+    double getMaxMillis();
+}
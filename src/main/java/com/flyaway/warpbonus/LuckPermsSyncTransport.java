@@ -0,0 +1,49 @@
+package com.flyaway.warpbonus;
+
+import net.luckperms.api.LuckPerms;
+import net.luckperms.api.event.EventSubscription;
+import net.luckperms.api.event.messaging.CustomMessageReceiveEvent;
+import net.luckperms.api.messaging.MessagingService;
+
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * Синхронизация через messaging-service LuckPerms (Redis, RabbitMQ, SQL и т.д.),
+ * который уже настроен на всех серверах сети. Используется отдельный канал пользовательских сообщений.
+ */
+public class LuckPermsSyncTransport implements SyncTransport {
+    static final String CHANNEL = "warpbonus:sync";
+
+    private final LuckPerms luckPerms;
+    private final EventSubscription<CustomMessageReceiveEvent> subscription;
+
+    public LuckPermsSyncTransport(LuckPerms luckPerms, Consumer<String> receiver) {
+        this.luckPerms = luckPerms;
+        this.subscription = luckPerms.getEventBus().subscribe(CustomMessageReceiveEvent.class, event -> {
+            if (CHANNEL.equals(event.getChannelId())) {
+                receiver.accept(event.getPayload());
+            }
+        });
+    }
+
+    @Override
+    public String getName() {
+        return luckPerms.getMessagingService().map(MessagingService::getName).orElse("luckperms (не настроен)");
+    }
+
+    @Override
+    public boolean send(String payload) {
+        Optional<MessagingService> service = luckPerms.getMessagingService();
+        if (service.isEmpty()) {
+            return false;
+        }
+        service.get().sendCustomMessage(CHANNEL, payload);
+        return true;
+    }
+
+    @Override
+    public void close() {
+        subscription.close();
+    }
+}
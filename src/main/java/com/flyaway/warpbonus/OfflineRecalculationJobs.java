@@ -0,0 +1,211 @@
+package com.flyaway.warpbonus;
+
+import net.luckperms.api.LuckPerms;
+import net.luckperms.api.model.group.Group;
+import net.luckperms.api.model.user.UserManager;
+import net.luckperms.api.node.matcher.NodeMatcher;
+import net.luckperms.api.node.types.InheritanceNode;
+import net.luckperms.api.query.QueryOptions;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Фоновый пересчёт прав офлайн-участников группы.
+ * Участники ищутся через {@link UserManager#searchAll} (включая группы, наследующие изменённую),
+ * обрабатываются пачками с ограниченным параллелизмом и паузой между пачками.
+ * Список участников и позиция обработки сохраняются в папке jobs/, поэтому после перезапуска
+ * незавершённые задания продолжаются с места остановки.
+ * <p>
+ * Каждый участник пачки пересчитывается общим {@link WarpPermissionUpdater} (loadUser -> расчёт -> saveUser),
+ * а не через {@link UserManager#modifyUser}: modifyUser сохраняет пользователя всегда, даже если лимит
+ * не изменился, а пакетного варианта у него нет. Общая цепочка пропускает сохранение для актуальных
+ * пользователей, а нагрузку на базу ограничивает массовая полоса планировщика (bulk.max-concurrent,
+ * bulk.rate-per-second).
+ */
+public class OfflineRecalculationJobs {
+    private final LuckPerms luckPerms;
+    private final Logger logger;
+    private final File jobsFolder;
+    private final Consumer<List<UUID>> recalculation;
+    private final ExecutorService jobExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "WarpBonus-Jobs");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+
+    private volatile int batchSize;
+    private volatile long batchDelayMillis;
+    private volatile boolean shuttingDown;
+
+    public OfflineRecalculationJobs(LuckPerms luckPerms, Logger logger, File jobsFolder, Consumer<List<UUID>> recalculation) {
+        this.luckPerms = luckPerms;
+        this.logger = logger;
+        this.jobsFolder = jobsFolder;
+        this.recalculation = recalculation;
+    }
+
+    public void configure(int batchSize, long batchDelayMillis) {
+        this.batchSize = Math.max(1, batchSize);
+        this.batchDelayMillis = Math.max(0, batchDelayMillis);
+    }
+
+    /**
+     * Продолжает задания, не завершённые до перезапуска.
+     */
+    public void resumePending() {
+        File[] files = jobsFolder.listFiles((dir, name) -> name.endsWith(".job"));
+        if (files == null) return;
+
+        for (File file : files) {
+            String groupName = file.getName().substring(0, file.getName().length() - ".job".length());
+            Job job = new Job(groupName);
+            jobs.put(groupName, job);
+            jobExecutor.execute(() -> run(job, false));
+        }
+    }
+
+    /**
+     * Запускает пересчёт всех офлайн-участников группы. Незавершённое задание по той же группе заменяется новым.
+     */
+    public void start(String groupName) {
+        Job job = new Job(groupName);
+        Job previous = jobs.put(groupName, job);
+        if (previous != null) {
+            previous.cancelled = true;
+        }
+        jobExecutor.execute(() -> run(job, true));
+    }
+
+    public int getActiveJobs() {
+        return jobs.size();
+    }
+
+    public void shutdown() {
+        shuttingDown = true;
+        jobExecutor.shutdownNow();
+        try {
+            jobExecutor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run(Job job, boolean fresh) {
+        if (job.cancelled) return;
+
+        File membersFile = new File(jobsFolder, job.groupName + ".job");
+        File cursorFile = new File(jobsFolder, job.groupName + ".cursor");
+        long start = System.nanoTime();
+
+        try {
+            List<UUID> members;
+            int cursor = 0;
+            if (fresh || !membersFile.exists()) {
+                members = findOfflineMembers(job.groupName);
+                if (!jobsFolder.exists()) {
+                    jobsFolder.mkdirs();
+                }
+                Files.write(membersFile.toPath(), members.stream().map(UUID::toString).toList(), StandardCharsets.UTF_8);
+                writeCursor(cursorFile, 0);
+            } else {
+                members = new ArrayList<>();
+                for (String line : Files.readAllLines(membersFile.toPath(), StandardCharsets.UTF_8)) {
+                    if (!line.isBlank()) {
+                        members.add(UUID.fromString(line.trim()));
+                    }
+                }
+                if (cursorFile.exists()) {
+                    cursor = Integer.parseInt(Files.readString(cursorFile.toPath(), StandardCharsets.UTF_8).trim());
+                }
+                logger.info("Продолжается пересчёт офлайн-участников группы " + job.groupName + " с позиции " + cursor + "/" + members.size());
+            }
+
+            int lastReportedPercent = -1;
+            while (cursor < members.size()) {
+                if (job.cancelled || shuttingDown) return;
+
+                List<UUID> batch = members.subList(cursor, Math.min(cursor + batchSize, members.size()));
+                recalculation.accept(batch);
+
+                cursor += batch.size();
+                writeCursor(cursorFile, cursor);
+
+                int percent = (int) (cursor * 100L / members.size());
+                if (percent / 10 != lastReportedPercent / 10) {
+                    lastReportedPercent = percent;
+                    logger.info("Пересчёт офлайн-участников группы " + job.groupName + ": " + cursor + "/" + members.size() + " (" + percent + "%)");
+                }
+
+                if (batchDelayMillis > 0 && cursor < members.size()) {
+                    Thread.sleep(batchDelayMillis);
+                }
+            }
+
+            Files.deleteIfExists(membersFile.toPath());
+            Files.deleteIfExists(cursorFile.toPath());
+            long elapsedMillis = (System.nanoTime() - start) / 1_000_000L;
+            logger.info("Пересчитаны права " + members.size() + " офлайн-участников группы " + job.groupName + " за " + elapsedMillis + " мс");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException | RuntimeException e) {
+            logger.log(Level.SEVERE, "Ошибка при пересчёте офлайн-участников группы " + job.groupName, e);
+        } finally {
+            jobs.remove(job.groupName, job);
+        }
+    }
+
+    private List<UUID> findOfflineMembers(String groupName) {
+        // Участники группы — это и участники всех групп, которые её наследуют
+        Set<String> groups = new TreeSet<>();
+        groups.add(groupName);
+        for (Group group : luckPerms.getGroupManager().getLoadedGroups()) {
+            for (Group parent : group.getInheritedGroups(QueryOptions.nonContextual())) {
+                if (parent.getName().equals(groupName)) {
+                    groups.add(group.getName());
+                    break;
+                }
+            }
+        }
+
+        UserManager userManager = luckPerms.getUserManager();
+        Set<UUID> members = new TreeSet<>();
+        for (String group : groups) {
+            Map<UUID, Collection<InheritanceNode>> result = userManager.searchAll(NodeMatcher.key(InheritanceNode.builder(group).build())).join();
+            members.addAll(result.keySet());
+        }
+        // Загруженные пользователи пересчитываются сразу через индекс участников
+        members.removeIf(userManager::isLoaded);
+        return new ArrayList<>(members);
+    }
+
+    private static void writeCursor(File cursorFile, int cursor) throws IOException {
+        Files.writeString(cursorFile.toPath(), Integer.toString(cursor), StandardCharsets.UTF_8);
+    }
+
+    private static final class Job {
+        private final String groupName;
+        private volatile boolean cancelled;
+
+        private Job(String groupName) {
+            this.groupName = groupName;
+        }
+    }
+}
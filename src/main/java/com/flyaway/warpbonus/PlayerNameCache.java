@@ -0,0 +1,109 @@
+package com.flyaway.warpbonus;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ограниченный двунаправленный кэш «ник <-> UUID» с вытеснением давно неиспользуемых записей (LRU)
+ * и сроком жизни записи. Используется при разрешении игроков в командах, чтобы не обращаться
+ * к кэшу профилей сервера и базе LuckPerms на каждый вызов.
+ */
+public class PlayerNameCache {
+    private final Map<String, Entry> byName;
+    private final Map<UUID, Entry> byId;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private volatile int maxSize;
+    private volatile long ttlMillis;
+
+    public PlayerNameCache(int maxSize, long ttlMillis) {
+        configure(maxSize, ttlMillis);
+        this.byName = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > PlayerNameCache.this.maxSize;
+            }
+        };
+        this.byId = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<UUID, Entry> eldest) {
+                return size() > PlayerNameCache.this.maxSize;
+            }
+        };
+    }
+
+    public void configure(int maxSize, long ttlMillis) {
+        this.maxSize = Math.max(1, maxSize);
+        this.ttlMillis = Math.max(1, ttlMillis);
+    }
+
+    public synchronized void put(UUID playerId, String playerName) {
+        if (playerName == null || playerName.isEmpty()) return;
+
+        Entry entry = new Entry(playerId, playerName, System.currentTimeMillis() + ttlMillis);
+        Entry previousById = byId.put(playerId, entry);
+        if (previousById != null && !previousById.playerName.equalsIgnoreCase(playerName)) {
+            byName.remove(key(previousById.playerName));
+        }
+        Entry previousByName = byName.put(key(playerName), entry);
+        if (previousByName != null && !previousByName.playerId.equals(playerId)) {
+            byId.remove(previousByName.playerId);
+        }
+    }
+
+    public synchronized UUID getId(String playerName) {
+        Entry entry = byName.get(key(playerName));
+        if (entry == null || isExpired(entry)) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return entry.playerId;
+    }
+
+    public synchronized String getName(UUID playerId) {
+        Entry entry = byId.get(playerId);
+        if (entry == null || isExpired(entry)) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return entry.playerName;
+    }
+
+    public synchronized int size() {
+        return byId.size();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public double getHitRate() {
+        long total = hits.get() + misses.get();
+        return total == 0 ? 0 : (double) hits.get() / total;
+    }
+
+    private boolean isExpired(Entry entry) {
+        if (entry.expiresAt > System.currentTimeMillis()) {
+            return false;
+        }
+        byId.remove(entry.playerId, entry);
+        byName.remove(key(entry.playerName), entry);
+        return true;
+    }
+
+    private static String key(String playerName) {
+        return playerName.toLowerCase(Locale.ROOT);
+    }
+
+    private record Entry(UUID playerId, String playerName, long expiresAt) {
+    }
+}
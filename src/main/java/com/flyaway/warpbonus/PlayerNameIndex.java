@@ -0,0 +1,94 @@
+package com.flyaway.warpbonus;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Ники отслеживаемых игроков (обладатели бонусов и игроки онлайн), отсортированные без учёта регистра.
+ * По нему строится сортировка списка по нику и автодополнение: поиск по префиксу — это диапазон
+ * отсортированной карты, без перебора всех игроков.
+ * <p>
+ * Размер ограничен числом обладателей бонусов плюс онлайн: ник игрока, который вышел и не имеет бонусов,
+ * удаляется. Ники всех остальных игроков хранит только ограниченный {@link PlayerNameCache}.
+ */
+public class PlayerNameIndex {
+    private final Set<UUID> tracked = ConcurrentHashMap.newKeySet();
+    private final Map<UUID, String> names = new ConcurrentHashMap<>();
+    private final NavigableMap<String, UUID> sorted = new ConcurrentSkipListMap<>();
+
+    /**
+     * Запоминает ник, только если игрок отслеживается; ники остальных игроков не накапливаются.
+     */
+    public synchronized void put(UUID playerId, String playerName) {
+        if (playerName == null || playerName.isEmpty() || !tracked.contains(playerId)) return;
+
+        String previous = names.put(playerId, playerName);
+        if (previous != null && !previous.equals(playerName)) {
+            sorted.remove(sortKey(previous, playerId));
+        }
+        sorted.put(sortKey(playerName, playerId), playerId);
+    }
+
+    /**
+     * Включает игрока в индекс или исключает из него вместе с ником. Ник включённого игрока
+     * нужно добавить через {@link #put}, если он ещё неизвестен.
+     */
+    public synchronized void setTracked(UUID playerId, boolean value) {
+        if (value) {
+            tracked.add(playerId);
+        } else if (tracked.remove(playerId)) {
+            String playerName = names.remove(playerId);
+            if (playerName != null) {
+                sorted.remove(sortKey(playerName, playerId));
+            }
+        }
+    }
+
+    /**
+     * Ники для автодополнения, начинающиеся с prefix (без учёта регистра), по алфавиту, не больше limit.
+     */
+    public List<String> complete(String prefix, int limit) {
+        String from = prefix.toLowerCase(Locale.ROOT);
+        List<String> result = new ArrayList<>(Math.min(limit, 16));
+        String last = null;
+        for (UUID playerId : sorted.subMap(from, true, from + Character.MAX_VALUE, false).values()) {
+            String playerName = names.get(playerId);
+            // Один ник мог принадлежать разным игрокам — в подсказках он нужен один раз
+            if (playerName == null || playerName.equalsIgnoreCase(last)) continue;
+            result.add(playerName);
+            last = playerName;
+            if (result.size() >= limit) break;
+        }
+        return result;
+    }
+
+    public String getName(UUID playerId) {
+        return names.get(playerId);
+    }
+
+    public boolean contains(UUID playerId) {
+        return names.containsKey(playerId);
+    }
+
+    /** UUID отслеживаемых игроков с известным ником в порядке ников. */
+    public Collection<UUID> sortedIds() {
+        return sorted.values();
+    }
+
+    public int size() {
+        return names.size();
+    }
+
+    private static String sortKey(String playerName, UUID playerId) {
+        // UUID в ключе нужен на случай, если один ник успел принадлежать разным игрокам
+        return playerName.toLowerCase(Locale.ROOT) + '\0' + playerId;
+    }
+}
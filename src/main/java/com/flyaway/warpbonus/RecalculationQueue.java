@@ -0,0 +1,85 @@
+package com.flyaway.warpbonus;
+
+import org.bukkit.Bukkit;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitScheduler;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+/**
+ * Очередь пересчёта прав с задержкой по каждому игроку.
+ * Все запросы для одного UUID, пришедшие в пределах периода тишины, схлопываются в один пересчёт,
+ * который выполняется через заданное количество тиков после последнего запроса.
+ * Пересчёт выполняется в полосе с наибольшим приоритетом среди схлопнутых запросов.
+ */
+public class RecalculationQueue {
+    private final Plugin plugin;
+    private final BukkitScheduler scheduler;
+    private final BiConsumer<UUID, RecalculationScheduler.Lane> recalculation;
+    private final Map<UUID, Pending> pending = new ConcurrentHashMap<>();
+    private final AtomicLong triggersReceived = new AtomicLong();
+    private final AtomicLong recalculationsExecuted = new AtomicLong();
+    private volatile long quietTicks;
+
+    public RecalculationQueue(Plugin plugin, long quietTicks, BiConsumer<UUID, RecalculationScheduler.Lane> recalculation) {
+        this(plugin, Bukkit.getScheduler(), quietTicks, recalculation);
+    }
+
+    public RecalculationQueue(Plugin plugin, BukkitScheduler scheduler, long quietTicks, BiConsumer<UUID, RecalculationScheduler.Lane> recalculation) {
+        this.plugin = plugin;
+        this.scheduler = scheduler;
+        this.recalculation = recalculation;
+        setQuietTicks(quietTicks);
+    }
+
+    public void setQuietTicks(long quietTicks) {
+        this.quietTicks = Math.max(1, quietTicks);
+    }
+
+    public void request(UUID playerId, RecalculationScheduler.Lane lane) {
+        triggersReceived.incrementAndGet();
+        pending.compute(playerId, (id, previous) -> {
+            RecalculationScheduler.Lane nextLane = lane;
+            if (previous != null) {
+                previous.task.cancel();
+                if (previous.lane.compareTo(nextLane) < 0) {
+                    nextLane = previous.lane;
+                }
+            }
+            Pending next = new Pending(nextLane);
+            next.task = scheduler.runTaskLaterAsynchronously(plugin, () -> {
+                if (pending.remove(id, next)) {
+                    recalculationsExecuted.incrementAndGet();
+                    recalculation.accept(id, next.lane);
+                }
+            }, quietTicks);
+            return next;
+        });
+    }
+
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    public long getTriggersReceived() {
+        return triggersReceived.get();
+    }
+
+    public long getRecalculationsExecuted() {
+        return recalculationsExecuted.get();
+    }
+
+    private static final class Pending {
+        private final RecalculationScheduler.Lane lane;
+        private BukkitTask task;
+
+        private Pending(RecalculationScheduler.Lane lane) {
+            this.lane = lane;
+        }
+    }
+}
@@ -0,0 +1,249 @@
+package com.flyaway.warpbonus;
+
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Планировщик пересчётов прав с приоритетными очередями.
+ * Не блокирует потоки: операции ждут в очереди своей полосы и запускаются по мере освобождения слотов,
+ * всего одновременно выполняется не больше maxConcurrent операций.
+ * <p>
+ * Свободный слот всегда достаётся полосе с наибольшим приоритетом: сначала игроки онлайн и входящие,
+ * затем команды администраторов, затем массовые пересчёты. Для массовой полосы дополнительно ограничены
+ * доля слотов и частота запусков (в секунду), чтобы изменение большой группы не перегружало базу LuckPerms.
+ * <p>
+ * Сами операции запускаются в переданном пуле, а не в потоке, вызвавшем submit или завершившем
+ * предыдущую операцию: это может быть основной поток сервера или поток входа игрока.
+ */
+public class RecalculationScheduler {
+    private final Map<Lane, Queue<Task>> queues = new EnumMap<>(Lane.class);
+    private final Map<Lane, LaneState> states = new EnumMap<>(Lane.class);
+    private final AtomicBoolean wakeUpScheduled = new AtomicBoolean();
+    private final Executor executor;
+    private final WarpBonusMetrics metrics;
+
+    private int inFlight;
+    private boolean draining;
+    private int maxConcurrent;
+    private int bulkMaxConcurrent;
+    private double bulkRatePerSecond;
+    private double bulkTokens;
+    private long bulkRefillNanos = System.nanoTime();
+
+    public RecalculationScheduler(int maxConcurrent, Executor executor, WarpBonusMetrics metrics) {
+        this.executor = executor;
+        this.metrics = metrics;
+        for (Lane lane : Lane.values()) {
+            queues.put(lane, new ArrayDeque<>());
+            states.put(lane, new LaneState());
+        }
+        this.maxConcurrent = Math.max(1, maxConcurrent);
+        this.bulkMaxConcurrent = Integer.MAX_VALUE;
+    }
+
+    public void setMaxConcurrent(int maxConcurrent) {
+        synchronized (this) {
+            this.maxConcurrent = Math.max(1, maxConcurrent);
+        }
+        drain();
+    }
+
+    /**
+     * @param maxConcurrent сколько слотов одновременно может занимать массовая полоса (0 — без ограничения)
+     * @param ratePerSecond сколько массовых пересчётов можно начинать в секунду (0 — без ограничения)
+     */
+    public void configureBulk(int maxConcurrent, double ratePerSecond) {
+        synchronized (this) {
+            this.bulkMaxConcurrent = maxConcurrent > 0 ? maxConcurrent : Integer.MAX_VALUE;
+            this.bulkRatePerSecond = Math.max(0, ratePerSecond);
+            this.bulkTokens = Math.min(bulkTokens, bulkCapacity());
+        }
+        drain();
+    }
+
+    public <T> CompletableFuture<T> submit(Lane lane, Supplier<CompletableFuture<T>> operation) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Task task = new Task(lane, System.nanoTime(), result, () -> {
+            CompletableFuture<T> future;
+            try {
+                future = operation.get();
+            } catch (Throwable t) {
+                future = CompletableFuture.failedFuture(t);
+            }
+            future.whenComplete((value, error) -> {
+                release(lane);
+                if (error != null) {
+                    result.completeExceptionally(error);
+                } else {
+                    result.complete(value);
+                }
+            });
+        });
+        synchronized (this) {
+            queues.get(lane).add(task);
+        }
+        drain();
+        return result;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    public synchronized int getInFlight(Lane lane) {
+        return states.get(lane).inFlight;
+    }
+
+    public synchronized int getWaiting() {
+        int waiting = 0;
+        for (Queue<Task> queue : queues.values()) {
+            waiting += queue.size();
+        }
+        return waiting;
+    }
+
+    public synchronized int getWaiting(Lane lane) {
+        return queues.get(lane).size();
+    }
+
+    public synchronized long getStarted(Lane lane) {
+        return states.get(lane).started;
+    }
+
+    private void release(Lane lane) {
+        synchronized (this) {
+            inFlight--;
+            states.get(lane).inFlight--;
+        }
+        drain();
+    }
+
+    /**
+     * Передаёт операции в пул, пока есть свободные слоты. Сам цикл только занимает слоты и ничего
+     * не выполняет, поэтому вызывающий поток не задерживается. Не вложенный: если очередь уже
+     * разбирается в другом потоке, release только освобождает слот, а следующую операцию передаст
+     * уже работающий цикл — он проверяет очередь под той же блокировкой, поэтому сигнал не теряется.
+     */
+    private void drain() {
+        synchronized (this) {
+            if (draining) return;
+            draining = true;
+        }
+        boolean idle = false;
+        try {
+            while (true) {
+                Task next;
+                synchronized (this) {
+                    next = pollNext();
+                    if (next == null) {
+                        draining = false;
+                        idle = true;
+                        return;
+                    }
+                    inFlight++;
+                    LaneState state = states.get(next.lane);
+                    state.inFlight++;
+                    state.started++;
+                }
+                metrics.getQueueWait(next.lane).recordSince(next.queuedNanos);
+                try {
+                    executor.execute(next.action);
+                } catch (RejectedExecutionException e) {
+                    // Пул остановлен при выключении плагина
+                    next.result.completeExceptionally(e);
+                    release(next.lane);
+                }
+            }
+        } finally {
+            if (!idle) {
+                synchronized (this) {
+                    draining = false;
+                }
+            }
+        }
+    }
+
+    /**
+     * Выбирает следующую операцию с учётом приоритетов и ограничений массовой полосы. Вызывается под блокировкой.
+     */
+    private Task pollNext() {
+        if (inFlight >= maxConcurrent) return null;
+
+        for (Lane lane : Lane.values()) {
+            Queue<Task> queue = queues.get(lane);
+            if (queue.isEmpty()) continue;
+            if (lane == Lane.BULK && !tryAcquireBulk()) continue;
+            return queue.poll();
+        }
+        return null;
+    }
+
+    private boolean tryAcquireBulk() {
+        if (states.get(Lane.BULK).inFlight >= bulkMaxConcurrent) {
+            // Освободится при завершении одной из массовых операций
+            return false;
+        }
+        if (bulkRatePerSecond <= 0) {
+            return true;
+        }
+
+        long now = System.nanoTime();
+        bulkTokens = Math.min(bulkCapacity(), bulkTokens + (now - bulkRefillNanos) * bulkRatePerSecond / 1e9);
+        bulkRefillNanos = now;
+        if (bulkTokens >= 1) {
+            bulkTokens -= 1;
+            return true;
+        }
+
+        long delayNanos = (long) Math.ceil((1 - bulkTokens) / bulkRatePerSecond * 1e9);
+        if (wakeUpScheduled.compareAndSet(false, true)) {
+            CompletableFuture.delayedExecutor(delayNanos, TimeUnit.NANOSECONDS).execute(() -> {
+                wakeUpScheduled.set(false);
+                drain();
+            });
+        }
+        return false;
+    }
+
+    /**
+     * Запас жетонов не больше одной секунды, чтобы после простоя массовая полоса не стартовала залпом.
+     */
+    private double bulkCapacity() {
+        return Math.max(1, bulkRatePerSecond);
+    }
+
+    public enum Lane {
+        /** Игроки онлайн и входящие на сервер. */
+        ONLINE("online"),
+        /** Команды администраторов и одиночные изменения офлайн-игроков. */
+        ADMIN("admin"),
+        /** Массовые пересчёты: изменение группы, массовая выдача, фоновые задания. */
+        BULK("bulk");
+
+        private final String id;
+
+        Lane(String id) {
+            this.id = id;
+        }
+
+        public String getId() {
+            return id;
+        }
+    }
+
+    private record Task(Lane lane, long queuedNanos, CompletableFuture<?> result, Runnable action) {
+    }
+
+    private static final class LaneState {
+        private int inFlight;
+        private long started;
+    }
+}
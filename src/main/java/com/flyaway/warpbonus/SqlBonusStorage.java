@@ -0,0 +1,314 @@
+package com.flyaway.warpbonus;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ObjIntConsumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Хранилище в SQL базе: встроенной SQLite или общей для нескольких серверов MySQL/MariaDB
+ * (оба драйвера входят в состав Paper).
+ * Все обращения к соединению выполняются в отдельном потоке хранилища, поэтому
+ * одно соединение никогда не используется из нескольких потоков одновременно.
+ */
+public class SqlBonusStorage implements BonusStorage {
+    private static final int BATCH_SIZE = 1000;
+
+    private static final List<String> SSL_MODES = List.of("DISABLED", "PREFERRED", "REQUIRED", "VERIFY_CA", "VERIFY_IDENTITY");
+
+    private final Dialect dialect;
+    private final String url;
+    private final String username;
+    private final String password;
+    private final Logger logger;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "WarpBonus-SQL");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private Connection connection;
+
+    private SqlBonusStorage(Dialect dialect, String url, String username, String password, Logger logger) throws IOException {
+        this.dialect = dialect;
+        this.url = url;
+        this.username = username;
+        this.password = password;
+        this.logger = logger;
+        try {
+            call(this::open);
+        } catch (IOException e) {
+            executor.shutdownNow();
+            throw e;
+        }
+    }
+
+    public static SqlBonusStorage sqlite(File databaseFile, Logger logger) throws IOException {
+        return new SqlBonusStorage(Dialect.SQLITE, "jdbc:sqlite:" + databaseFile.getAbsolutePath(), null, null, logger);
+    }
+
+    /**
+     * @param sslMode                  режим TLS драйвера Connector/J (sslMode): DISABLED, PREFERRED, REQUIRED,
+     *                                 VERIFY_CA или VERIFY_IDENTITY
+     * @param allowPublicKeyRetrieval  разрешить запрос открытого ключа сервера для передачи пароля без TLS
+     */
+    public static SqlBonusStorage mysql(String host, int port, String database, String username, String password,
+                                        String sslMode, boolean allowPublicKeyRetrieval, Logger logger) throws IOException {
+        String mode = sslMode.toUpperCase(Locale.ROOT);
+        if (!SSL_MODES.contains(mode)) {
+            throw new IOException("Неизвестный storage.mysql.ssl-mode: " + sslMode + ", доступны: " + SSL_MODES);
+        }
+        if (mode.equals("DISABLED") || mode.equals("PREFERRED")) {
+            logger.warning("Соединение с MySQL может идти без шифрования (storage.mysql.ssl-mode: " + mode + ")");
+        }
+        String url = "jdbc:mysql://" + host + ":" + port + "/" + database
+                + "?sslMode=" + mode + "&allowPublicKeyRetrieval=" + allowPublicKeyRetrieval;
+        return new SqlBonusStorage(Dialect.MYSQL, url, username, password, logger);
+    }
+
+    @Override
+    public String getName() {
+        return dialect.name;
+    }
+
+    private Void open() throws SQLException {
+        try {
+            Class.forName(dialect.driver);
+        } catch (ClassNotFoundException e) {
+            throw new SQLException("Драйвер " + dialect.name + " не найден", e);
+        }
+        connection = username != null
+                ? DriverManager.getConnection(url, username, password)
+                : DriverManager.getConnection(url);
+        try (Statement statement = connection.createStatement()) {
+            if (dialect == Dialect.SQLITE) {
+                statement.execute("PRAGMA journal_mode=WAL");
+                statement.execute("PRAGMA synchronous=NORMAL");
+            }
+            statement.execute("CREATE TABLE IF NOT EXISTS warp_bonus ("
+                    + "uuid CHAR(36) NOT NULL PRIMARY KEY, "
+                    + "amount INTEGER NOT NULL)");
+        }
+        return null;
+    }
+
+    /**
+     * Соединение с сетевой базой может быть закрыто сервером по таймауту простоя — тогда открываем заново.
+     */
+    private void ensureConnection() throws SQLException {
+        if (connection == null || !connection.isValid(2)) {
+            if (connection != null) {
+                logger.warning("Соединение с базой бонусных варпов потеряно, переподключение");
+                try {
+                    connection.close();
+                } catch (SQLException ignored) {}
+            }
+            open();
+        }
+    }
+
+    @Override
+    public Map<UUID, Integer> loadAll() throws IOException {
+        return call(() -> {
+            Map<UUID, Integer> result = new HashMap<>();
+            forEachRow((playerId, amount) -> result.put(playerId, amount));
+            return result;
+        });
+    }
+
+    @Override
+    public int get(UUID playerId) throws IOException {
+        return call(() -> select(playerId));
+    }
+
+    @Override
+    public void set(UUID playerId, int amount) throws IOException {
+        saveBatch(Map.of(playerId, amount));
+    }
+
+    /**
+     * Изменение выполняется одним запросом на стороне базы, поэтому одновременные вызовы
+     * с разных серверов, работающих с общей базой, не теряют обновлений.
+     */
+    @Override
+    public int increment(UUID playerId, int delta) throws IOException {
+        return call(() -> inTransaction(() -> {
+            try (PreparedStatement statement = connection.prepareStatement(dialect.increment)) {
+                statement.setString(1, playerId.toString());
+                statement.setInt(2, delta);
+                statement.setInt(3, delta);
+                statement.executeUpdate();
+            }
+            int amount = select(playerId);
+            if (amount <= 0) {
+                delete(Map.of(playerId, 0));
+            }
+            return Math.max(0, amount);
+        }));
+    }
+
+    @Override
+    public void list(ObjIntConsumer<UUID> consumer) throws IOException {
+        call(() -> {
+            forEachRow(consumer);
+            return null;
+        });
+    }
+
+    @Override
+    public void saveBatch(Map<UUID, Integer> changes) throws IOException {
+        if (changes.isEmpty()) return;
+
+        call(() -> inTransaction(() -> {
+            write(changes);
+            return null;
+        }));
+    }
+
+    private void write(Map<UUID, Integer> changes) throws SQLException {
+        try (PreparedStatement upsert = connection.prepareStatement(dialect.upsert)) {
+            int pending = 0;
+            for (Map.Entry<UUID, Integer> entry : changes.entrySet()) {
+                if (entry.getValue() <= 0) continue;
+                upsert.setString(1, entry.getKey().toString());
+                upsert.setInt(2, entry.getValue());
+                upsert.addBatch();
+                if (++pending % BATCH_SIZE == 0) {
+                    upsert.executeBatch();
+                }
+            }
+            upsert.executeBatch();
+        }
+        delete(changes);
+    }
+
+    @Override
+    public void close() {
+        executor.execute(() -> {
+            try {
+                if (connection != null) {
+                    connection.close();
+                }
+            } catch (SQLException e) {
+                logger.log(Level.WARNING, "Ошибка при закрытии базы бонусных варпов", e);
+            }
+        });
+        executor.shutdown();
+        try {
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private int select(UUID playerId) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT amount FROM warp_bonus WHERE uuid = ?")) {
+            statement.setString(1, playerId.toString());
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next() ? resultSet.getInt(1) : 0;
+            }
+        }
+    }
+
+    private void delete(Map<UUID, Integer> changes) throws SQLException {
+        try (PreparedStatement delete = connection.prepareStatement("DELETE FROM warp_bonus WHERE uuid = ?")) {
+            int pending = 0;
+            for (Map.Entry<UUID, Integer> entry : changes.entrySet()) {
+                if (entry.getValue() > 0) continue;
+                delete.setString(1, entry.getKey().toString());
+                delete.addBatch();
+                if (++pending % BATCH_SIZE == 0) {
+                    delete.executeBatch();
+                }
+            }
+            delete.executeBatch();
+        }
+    }
+
+    private void forEachRow(ObjIntConsumer<UUID> consumer) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT uuid, amount FROM warp_bonus")) {
+            while (resultSet.next()) {
+                if (resultSet.getInt(2) <= 0) continue;
+                try {
+                    consumer.accept(UUID.fromString(resultSet.getString(1)), resultSet.getInt(2));
+                } catch (IllegalArgumentException e) {
+                    logger.warning("Некорректный UUID в базе бонусных варпов: " + resultSet.getString(1));
+                }
+            }
+        }
+    }
+
+    private <T> T inTransaction(SqlCall<T> call) throws SQLException {
+        connection.setAutoCommit(false);
+        try {
+            T result = call.call();
+            connection.commit();
+            return result;
+        } catch (SQLException | RuntimeException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(true);
+        }
+    }
+
+    private <T> T call(SqlCall<T> call) throws IOException {
+        try {
+            return executor.submit(() -> {
+                ensureConnection();
+                return call.call();
+            }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Операция с базой бонусных варпов прервана", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Ошибка базы бонусных варпов", e.getCause());
+        }
+    }
+
+    private enum Dialect {
+        SQLITE("sqlite", "org.sqlite.JDBC",
+                "INSERT INTO warp_bonus (uuid, amount) VALUES (?, ?) "
+                        + "ON CONFLICT(uuid) DO UPDATE SET amount = excluded.amount",
+                "INSERT INTO warp_bonus (uuid, amount) VALUES (?, MAX(0, ?)) "
+                        + "ON CONFLICT(uuid) DO UPDATE SET amount = MAX(0, amount + ?)"),
+        MYSQL("mysql", "com.mysql.cj.jdbc.Driver",
+                "INSERT INTO warp_bonus (uuid, amount) VALUES (?, ?) "
+                        + "ON DUPLICATE KEY UPDATE amount = VALUES(amount)",
+                "INSERT INTO warp_bonus (uuid, amount) VALUES (?, GREATEST(0, ?)) "
+                        + "ON DUPLICATE KEY UPDATE amount = GREATEST(0, amount + ?)");
+
+        private final String name;
+        private final String driver;
+        private final String upsert;
+        private final String increment;
+
+        Dialect(String name, String driver, String upsert, String increment) {
+            this.name = name;
+            this.driver = driver;
+            this.upsert = upsert;
+            this.increment = increment;
+        }
+    }
+
+    @FunctionalInterface
+    private interface SqlCall<T> {
+        T call() throws SQLException;
+    }
+}
@@ -0,0 +1,31 @@
+package com.flyaway.warpbonus;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+/**
+ * Однократный перенос данных из bonus_warps.yml в другое хранилище.
+ * После успешного переноса файл переименовывается в bonus_warps.yml.migrated,
+ * чтобы перенос не выполнялся повторно.
+ */
+public final class StorageMigrator {
+
+    private StorageMigrator() {
+    }
+
+    public static void migrateFromYaml(File yamlFile, BonusStorage target, Logger logger) throws IOException {
+        if (!yamlFile.exists() || target instanceof YamlBonusStorage) return;
+
+        Map<UUID, Integer> data = new YamlBonusStorage(yamlFile, logger).loadAll();
+        target.saveBatch(data);
+
+        File migrated = new File(yamlFile.getParentFile(), yamlFile.getName() + ".migrated");
+        if (!yamlFile.renameTo(migrated)) {
+            throw new IOException("Не удалось переименовать " + yamlFile.getName() + " в " + migrated.getName());
+        }
+        logger.info("Перенесено записей из " + yamlFile.getName() + " в хранилище " + target.getName() + ": " + data.size());
+    }
+}
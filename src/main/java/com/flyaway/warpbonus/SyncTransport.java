@@ -0,0 +1,16 @@
+package com.flyaway.warpbonus;
+
+/**
+ * Канал, по которому серверы обмениваются короткими сообщениями об изменении бонусов.
+ * Доставка — «в лучшем случае»: потерянное сообщение лишь откладывает обновление до следующего изменения или перезагрузки.
+ */
+public interface SyncTransport {
+
+    String getName();
+
+    /** Отправляет сообщение всем остальным серверам. Возвращает false, если канал недоступен. */
+    boolean send(String payload);
+
+    default void close() {
+    }
+}
@@ -0,0 +1,182 @@
+package com.flyaway.warpbonus;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ObjIntConsumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Временные бонусные варпы. Выдача сразу прибавляется к бонусу игрока, а по истечении срока вычитается.
+ * Список выдач хранится в temporary_grants.yml (строки {@code <id> <UUID> <количество> <срок в мс>}),
+ * сроки отслеживаются одним {@link TimingWheel}, который продвигается раз в секунду.
+ * Выдачи, истёкшие пока сервер был выключен, снимаются при первом тике после запуска.
+ * <p>
+ * Если файл не удалось прочитать, {@link #load()} бросает исключение и список не сохраняется:
+ * иначе пустой список перезаписал бы файл, и временные бонусы стали бы постоянными.
+ */
+public class TemporaryGrants {
+    private static final long TICK_MILLIS = 1000;
+    private static final int WHEEL_SIZE = 64;
+
+    private final File file;
+    private final Logger logger;
+    private final ObjIntConsumer<UUID> onExpired;
+    private final Map<Long, Grant> grants = new ConcurrentHashMap<>();
+    private final AtomicLong nextId = new AtomicLong(1);
+    private final TimingWheel<Grant> wheel = new TimingWheel<>(TICK_MILLIS, WHEEL_SIZE, System.currentTimeMillis());
+
+    private volatile boolean loaded;
+    private volatile List<Grant> expiredOnLoad = List.of();
+
+    /**
+     * @param onExpired вызывается один раз на игрока с суммой истёкших за тик выдач
+     */
+    public TemporaryGrants(File file, Logger logger, ObjIntConsumer<UUID> onExpired) {
+        this.file = file;
+        this.logger = logger;
+        this.onExpired = onExpired;
+    }
+
+    public void load() throws IOException {
+        if (!file.exists()) {
+            loaded = true;
+            return;
+        }
+
+        List<Grant> expired = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) continue;
+
+                String[] parts = line.split("\\s+");
+                try {
+                    Grant grant = new Grant(Long.parseLong(parts[0]), UUID.fromString(parts[1]),
+                            Integer.parseInt(parts[2]), Long.parseLong(parts[3]));
+                    nextId.accumulateAndGet(grant.id() + 1, Math::max);
+                    if (!track(grant)) {
+                        expired.add(grant);
+                    }
+                } catch (RuntimeException e) {
+                    logger.warning("Пропущена некорректная строка в " + file.getName() + ": " + line);
+                }
+            }
+        } catch (IOException e) {
+            throw new IOException("Не удалось загрузить временные бонусные варпы из " + file.getName(), e);
+        }
+
+        loaded = true;
+        expiredOnLoad = expired;
+        logger.info("Загружено временных бонусных варпов: " + grants.size() + (expired.isEmpty() ? "" : ", истекло за время простоя: " + expired.size()));
+    }
+
+    /**
+     * Регистрирует выдачу с истечением в expiresAtMillis. Сам бонус должен быть уже прибавлен.
+     */
+    public Grant add(UUID playerId, int amount, long expiresAtMillis) {
+        Grant grant = new Grant(nextId.getAndIncrement(), playerId, amount, expiresAtMillis);
+        if (track(grant)) {
+            save();
+        } else {
+            expire(List.of(grant));
+        }
+        return grant;
+    }
+
+    /**
+     * Продвигает колесо до текущего времени и снимает истёкшие выдачи. Вызывается раз в секунду.
+     */
+    public void tick() {
+        List<Grant> expired = wheel.advance(System.currentTimeMillis());
+        if (!expiredOnLoad.isEmpty()) {
+            expired = new ArrayList<>(expired);
+            expired.addAll(expiredOnLoad);
+            expiredOnLoad = List.of();
+        }
+        if (!expired.isEmpty()) {
+            expire(expired);
+        }
+    }
+
+    public List<Grant> getActive(UUID playerId) {
+        List<Grant> result = new ArrayList<>();
+        for (Grant grant : grants.values()) {
+            if (grant.playerId().equals(playerId)) {
+                result.add(grant);
+            }
+        }
+        result.sort(Comparator.comparingLong(Grant::expiresAt));
+        return result;
+    }
+
+    public int size() {
+        return grants.size();
+    }
+
+    private boolean track(Grant grant) {
+        if (wheel.schedule(grant, grant.expiresAt()) == null) {
+            return false;
+        }
+        grants.put(grant.id(), grant);
+        return true;
+    }
+
+    private void expire(List<Grant> expired) {
+        // Несколько выдач одного игрока, истёкших одновременно, — один вычет и один пересчёт
+        Map<UUID, Integer> byPlayer = new LinkedHashMap<>();
+        for (Grant grant : expired) {
+            grants.remove(grant.id());
+            byPlayer.merge(grant.playerId(), grant.amount(), Integer::sum);
+        }
+        save();
+        byPlayer.forEach(onExpired::accept);
+    }
+
+    private synchronized void save() {
+        if (!loaded) {
+            logger.severe("Временные бонусные варпы не загружены, " + file.getName() + " не перезаписывается");
+            return;
+        }
+        Path target = file.toPath();
+        Path temp = target.resolveSibling(file.getName() + ".tmp");
+        List<Grant> snapshot = new ArrayList<>(grants.values());
+        snapshot.sort(Comparator.comparingLong(Grant::id));
+        try {
+            try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                writer.write("# <id> <UUID> <количество> <истекает, мс с 1970-01-01>");
+                writer.newLine();
+                for (Grant grant : snapshot) {
+                    writer.write(grant.id() + " " + grant.playerId() + " " + grant.amount() + " " + grant.expiresAt());
+                    writer.newLine();
+                }
+            }
+            try {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Не удалось сохранить временные бонусные варпы", e);
+        }
+    }
+
+    public record Grant(long id, UUID playerId, int amount, long expiresAt) {
+    }
+}
@@ -0,0 +1,128 @@
+package com.flyaway.warpbonus;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Иерархическое колесо таймеров. Нижний уровень — wheelSize ячеек по tickMillis, каждый следующий уровень
+ * создаётся по необходимости и покрывает в wheelSize раз больший интервал. При обороте нижнего колеса
+ * очередная ячейка верхнего уровня «осыпается» вниз, поэтому добавление и срабатывание таймера стоят O(1)
+ * независимо от их количества и срока — без отдельной задачи на каждый таймер и без полного перебора.
+ * <p>
+ * Колесо не имеет своего потока: время продвигается вызовом {@link #advance(long)}.
+ */
+public class TimingWheel<T> {
+    private final long tickMillis;
+    private final int wheelSize;
+    private final long intervalMillis;
+    private final List<List<Timer<T>>> buckets;
+    private long currentTime;
+    private TimingWheel<T> overflow;
+    private int size;
+
+    public TimingWheel(long tickMillis, int wheelSize, long startMillis) {
+        this.tickMillis = tickMillis;
+        this.wheelSize = wheelSize;
+        this.intervalMillis = tickMillis * wheelSize;
+        this.currentTime = startMillis - startMillis % tickMillis;
+        this.buckets = new ArrayList<>(wheelSize);
+        for (int i = 0; i < wheelSize; i++) {
+            buckets.add(new ArrayList<>());
+        }
+    }
+
+    /**
+     * Добавляет таймер. Возвращает null, если срок уже наступил — тогда обработать значение нужно сразу.
+     */
+    public synchronized Timer<T> schedule(T value, long deadlineMillis) {
+        Timer<T> timer = new Timer<>(value, deadlineMillis);
+        if (!insert(timer)) {
+            return null;
+        }
+        size++;
+        return timer;
+    }
+
+    public synchronized void cancel(Timer<T> timer) {
+        if (!timer.cancelled) {
+            timer.cancelled = true;
+            size--;
+        }
+    }
+
+    /**
+     * Продвигает время до nowMillis и возвращает значения всех сработавших таймеров.
+     */
+    public synchronized List<T> advance(long nowMillis) {
+        List<T> expired = new ArrayList<>();
+        while (currentTime + tickMillis <= nowMillis) {
+            tick(currentTime + tickMillis, this, expired);
+        }
+        size -= expired.size();
+        return expired;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    private boolean insert(Timer<T> timer) {
+        if (timer.deadline < currentTime) {
+            return false;
+        }
+        if (timer.deadline < currentTime + intervalMillis) {
+            buckets.get(indexOf(timer.deadline)).add(timer);
+            return true;
+        }
+        if (overflow == null) {
+            overflow = new TimingWheel<>(intervalMillis, wheelSize, currentTime);
+        }
+        return overflow.insert(timer);
+    }
+
+    /**
+     * Нижний уровень срабатывает по ячейке только что закончившегося тика,
+     * верхние — опускают вниз ячейку начинающегося интервала.
+     */
+    private void tick(long time, TimingWheel<T> root, List<T> expired) {
+        currentTime = time;
+        if (overflow != null && time % intervalMillis == 0) {
+            overflow.tick(time, root, expired);
+        }
+
+        List<Timer<T>> bucket = buckets.get(indexOf(this == root ? time - tickMillis : time));
+        if (bucket.isEmpty()) return;
+
+        List<Timer<T>> drained = new ArrayList<>(bucket);
+        bucket.clear();
+        for (Timer<T> timer : drained) {
+            if (timer.cancelled) continue;
+            if (!root.insert(timer)) {
+                expired.add(timer.value);
+            }
+        }
+    }
+
+    private int indexOf(long time) {
+        return (int) ((time / tickMillis) % wheelSize);
+    }
+
+    public static final class Timer<T> {
+        private final T value;
+        private final long deadline;
+        private boolean cancelled;
+
+        private Timer(T value, long deadline) {
+            this.value = value;
+            this.deadline = deadline;
+        }
+
+        public T getValue() {
+            return value;
+        }
+
+        public long getDeadline() {
+            return deadline;
+        }
+    }
+}
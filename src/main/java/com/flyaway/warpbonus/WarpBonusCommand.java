@@ -1,16 +1,23 @@
 package com.flyaway.warpbonus;
 
 import org.bukkit.Bukkit;
-import org.bukkit.OfflinePlayer;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
 import org.bukkit.command.TabCompleter;
 import org.bukkit.entity.Player;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.text.SimpleDateFormat;
 import java.util.*;
 
 public class WarpBonusCommand implements CommandExecutor, TabCompleter {
+    private static final Set<String> PLAYER_SUBCOMMANDS = Set.of("add", "set", "check");
+    private static final int MAX_NAME_SUGGESTIONS = 50;
+
     private final WarpBonusManager bonusManager;
 
     public WarpBonusCommand(WarpBonusManager bonusManager) {
@@ -34,7 +41,7 @@ public class WarpBonusCommand implements CommandExecutor, TabCompleter {
         switch (subCommand) {
             case "add":
                 if (args.length < 2) {
-                    sender.sendMessage("§cИспользование: /warpbonus add <игрок> [количество]");
+                    sender.sendMessage("§cИспользование: /warpbonus add <игрок> [количество] [срок]");
                     return true;
                 }
                 handleAdd(sender, args);
@@ -57,7 +64,40 @@ public class WarpBonusCommand implements CommandExecutor, TabCompleter {
                 break;
 
             case "list":
-                handleList(sender);
+                handleList(sender, args);
+                break;
+
+            case "bulk":
+                if (args.length < 3 || !(args[1].equalsIgnoreCase("add") || args[1].equalsIgnoreCase("set"))) {
+                    sender.sendMessage("§cИспользование: /warpbonus bulk <add|set> <файл | игрок:количество,...>");
+                    return true;
+                }
+                handleBulk(sender, args);
+                break;
+
+            case "audit":
+                handleAudit(sender, args);
+                break;
+
+            case "export":
+                handleExport(sender, args);
+                break;
+
+            case "import":
+                if (args.length < 2 || (args.length >= 3 && !args[2].equalsIgnoreCase("merge") && !args[2].equalsIgnoreCase("replace"))
+                        || (args.length >= 4 && (!args[2].equalsIgnoreCase("replace") || !args[3].equalsIgnoreCase("confirm")))) {
+                    sender.sendMessage("§cИспользование: /warpbonus import <файл> [merge|replace [confirm]]");
+                    return true;
+                }
+                handleImport(sender, args);
+                break;
+
+            case "reload":
+                handleReload(sender);
+                break;
+
+            case "stats":
+                handleStats(sender);
                 break;
 
             default:
@@ -70,17 +110,23 @@ public class WarpBonusCommand implements CommandExecutor, TabCompleter {
 
     private void showUsage(CommandSender sender) {
         sender.sendMessage("§6=== WarpBonus Команды ===");
-        sender.sendMessage("§e/warpbonus add <игрок> [количество] §7- Добавить бонусные варпы");
+        sender.sendMessage("§e/warpbonus add <игрок> [количество] [срок] §7- Добавить бонусные варпы (срок: 30d, 12h, 1d12h)");
         sender.sendMessage("§e/warpbonus set <игрок> <количество> §7- Установить количество бонусных варпов");
         sender.sendMessage("§e/warpbonus check <игрок> §7- Проверить бонусные варпы игрока");
-        sender.sendMessage("§e/warpbonus list §7- Список всех бонусных варпов");
+        sender.sendMessage("§e/warpbonus list [страница] [amount|name] §7- Список бонусных варпов");
+        sender.sendMessage("§e/warpbonus bulk <add|set> <файл | игрок:количество,...> §7- Массовая выдача бонусных варпов");
+        sender.sendMessage("§e/warpbonus audit [fix] [all] §7- Проверить (и исправить) выданные лимиты варпов");
+        sender.sendMessage("§e/warpbonus export [файл] §7- Выгрузить бонусные варпы в файл (.gz — со сжатием)");
+        sender.sendMessage("§e/warpbonus import <файл> [merge|replace [confirm]] §7- Загрузить бонусные варпы из файла");
+        sender.sendMessage("§e/warpbonus reload §7- Перезагрузить конфиг и бонусные варпы");
+        sender.sendMessage("§e/warpbonus stats §7- Статистика работы плагина");
     }
 
     private void handleAdd(CommandSender sender, String[] args) {
         String playerName = args[1];
 
         Bukkit.getScheduler().runTaskAsynchronously(WarpBonusPlugin.getInstance(), () -> {
-            UUID playerId = getUUIDFromName(playerName);
+            UUID playerId = bonusManager.resolvePlayerId(playerName);
             if (playerId == null) {
                 sender.sendMessage("§cИгрок " + playerName + " не найден!");
                 return;
@@ -94,9 +140,26 @@ public class WarpBonusCommand implements CommandExecutor, TabCompleter {
                         sender.sendMessage("§cКоличество должно быть положительным!");
                         return;
                     }
-                    int currentBonus = bonusManager.getBonusWarps(playerId);
-                    int newBonus = currentBonus + amount;
-                    bonusManager.setBonusWarps(playerId, newBonus);
+                    if (args.length >= 4) {
+                        long duration = parseDuration(args[3]);
+                        if (duration <= 0) {
+                            sender.sendMessage("§cНекорректный срок! Пример: 30d, 12h, 45m, 1d12h");
+                            return;
+                        }
+                        int newBonus = bonusManager.addTemporaryBonusWarps(playerId, amount, duration);
+
+                        String currentPlayerName = bonusManager.getPlayerName(playerId);
+                        sender.sendMessage("§aДобавлено §e" + amount + "§a бонусных варпов игроку " + currentPlayerName
+                                + " на §e" + formatDuration(duration) + "§a. Теперь: §e" + newBonus);
+
+                        Player target = Bukkit.getPlayer(playerId);
+                        if (target != null) {
+                            target.sendMessage("§eВам было добавлено §6" + amount + "§e бонусных варпов на §6" + formatDuration(duration) + "§e! Всего: §6" + newBonus);
+                        }
+                        return;
+                    }
+
+                    int newBonus = bonusManager.incrementBonusWarps(playerId, amount, BonusWarpsChangeEvent.Cause.COMMAND);
 
                     String currentPlayerName = bonusManager.getPlayerName(playerId);
                     sender.sendMessage("§aДобавлено §e" + amount + "§a бонусных варпов игроку " + currentPlayerName + ". Теперь: §e" + newBonus);
@@ -110,8 +173,7 @@ public class WarpBonusCommand implements CommandExecutor, TabCompleter {
                 }
             } else {
                 // Добавить 1 варп по умолчанию
-                bonusManager.addBonusWarp(playerId);
-                int newBonus = bonusManager.getBonusWarps(playerId);
+                int newBonus = bonusManager.addBonusWarp(playerId);
                 String currentPlayerName = bonusManager.getPlayerName(playerId);
                 sender.sendMessage("§aИгроку " + currentPlayerName + " добавлен 1 бонусный варп! Теперь: §e" + newBonus);
 
@@ -128,7 +190,7 @@ public class WarpBonusCommand implements CommandExecutor, TabCompleter {
         String amountStr = args[2];
 
         Bukkit.getScheduler().runTaskAsynchronously(WarpBonusPlugin.getInstance(), () -> {
-            UUID playerId = getUUIDFromName(playerName);
+            UUID playerId = bonusManager.resolvePlayerId(playerName);
             if (playerId == null) {
                 sender.sendMessage("§cИгрок " + playerName + " не найден!");
                 return;
@@ -140,7 +202,7 @@ public class WarpBonusCommand implements CommandExecutor, TabCompleter {
                     sender.sendMessage("§cКоличество не может быть отрицательным!");
                     return;
                 }
-                bonusManager.setBonusWarps(playerId, amount);
+                bonusManager.setBonusWarps(playerId, amount, BonusWarpsChangeEvent.Cause.COMMAND);
                 String currentPlayerName = bonusManager.getPlayerName(playerId);
                 sender.sendMessage("§aУстановлено §e" + amount + "§a бонусных варпов для игрока " + currentPlayerName);
 
@@ -158,7 +220,7 @@ public class WarpBonusCommand implements CommandExecutor, TabCompleter {
         String playerName = args[1];
 
         Bukkit.getScheduler().runTaskAsynchronously(WarpBonusPlugin.getInstance(), () -> {
-            UUID playerId = getUUIDFromName(playerName);
+            UUID playerId = bonusManager.resolvePlayerId(playerName);
             if (playerId == null) {
                 sender.sendMessage("§cИгрок " + playerName + " не найден!");
                 return;
@@ -167,33 +229,358 @@ public class WarpBonusCommand implements CommandExecutor, TabCompleter {
             int bonus = bonusManager.getBonusWarps(playerId);
             String currentPlayerName = bonusManager.getPlayerName(playerId);
             sender.sendMessage("§eИгрок " + currentPlayerName + " имеет §6" + bonus + "§e бонусных варпов");
+
+            long now = System.currentTimeMillis();
+            for (TemporaryGrants.Grant grant : bonusManager.getTemporaryGrants().getActive(playerId)) {
+                sender.sendMessage("§7 из них временных: §e" + grant.amount() + "§7, истекает через §e"
+                        + formatDuration(Math.max(0, grant.expiresAt() - now)));
+            }
         });
     }
 
-    private void handleList(CommandSender sender) {
-        sender.sendMessage("§6=== Список бонусных варпов ===");
-        Map<String, Integer> warps = bonusManager.getReadableBonusWarps();
-        if (warps.isEmpty()) {
-            sender.sendMessage("§7Нет записей о бонусных варпах");
-        } else {
-            warps.forEach((playerName, amount) -> {
-                sender.sendMessage("§e" + playerName + "§7: §6" + amount + "§7 бонусных варпов");
+    private void handleList(CommandSender sender, String[] args) {
+        int page = 1;
+        BonusListPage.Sort sort = BonusListPage.Sort.AMOUNT;
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equalsIgnoreCase("name")) {
+                sort = BonusListPage.Sort.NAME;
+            } else if (args[i].equalsIgnoreCase("amount")) {
+                sort = BonusListPage.Sort.AMOUNT;
+            } else {
+                try {
+                    page = Integer.parseInt(args[i]);
+                } catch (NumberFormatException e) {
+                    sender.sendMessage("§cИспользование: /warpbonus list [страница] [amount|name]");
+                    return;
+                }
+            }
+        }
+
+        int requestedPage = page;
+        BonusListPage.Sort requestedSort = sort;
+        int pageSize = Math.max(1, WarpBonusPlugin.getInstance().getConfig().getInt("list.page-size", 10));
+        Bukkit.getScheduler().runTaskAsynchronously(WarpBonusPlugin.getInstance(), () -> {
+            BonusListPage result = bonusManager.getBonusPage(requestedPage, pageSize, requestedSort);
+            sender.sendMessage("§6=== Список бонусных варпов (" + result.page() + "/" + result.pages() + ") ===");
+            if (result.rows().isEmpty()) {
+                sender.sendMessage("§7Нет записей о бонусных варпах");
+                return;
+            }
+            for (BonusListPage.Row row : result.rows()) {
+                sender.sendMessage("§e" + row.playerName() + "§7: §6" + row.amount() + "§7 бонусных варпов");
+            }
+            if (result.page() < result.pages()) {
+                sender.sendMessage("§7Следующая страница: §e/warpbonus list " + (result.page() + 1) + " "
+                        + requestedSort.name().toLowerCase());
+            }
+        });
+    }
+
+    private void handleBulk(CommandSender sender, String[] args) {
+        BulkBonusUpdate.Mode mode = args[1].equalsIgnoreCase("add") ? BulkBonusUpdate.Mode.ADD : BulkBonusUpdate.Mode.SET;
+        String source = String.join(" ", Arrays.copyOfRange(args, 2, args.length));
+
+        Bukkit.getScheduler().runTaskAsynchronously(WarpBonusPlugin.getInstance(), () -> {
+            List<BulkBonusUpdate.Entry> entries;
+            try {
+                entries = parseBulkEntries(source, mode);
+            } catch (IOException e) {
+                sender.sendMessage("§cНе удалось прочитать файл: " + e.getMessage());
+                return;
+            } catch (IllegalArgumentException e) {
+                sender.sendMessage("§c" + e.getMessage());
+                return;
+            }
+            if (entries.isEmpty()) {
+                sender.sendMessage("§cНет записей для обработки");
+                return;
+            }
+
+            sender.sendMessage("§eОбработка записей: §6" + entries.size() + "§e...");
+            bonusManager.applyBulk(mode, entries, BonusWarpsChangeEvent.Cause.BULK).whenComplete((result, error) -> {
+                if (error != null) {
+                    sender.sendMessage("§cОшибка при массовой выдаче: " + error.getMessage());
+                    return;
+                }
+
+                int shownFailures = 0;
+                for (BulkBonusUpdate.EntryResult entryResult : result.entries()) {
+                    if (entryResult.isSuccess()) {
+                        Player target = Bukkit.getPlayer(entryResult.playerId());
+                        if (target != null) {
+                            target.sendMessage("§eВаше количество бонусных варпов: §6" + entryResult.newAmount());
+                        }
+                    } else if (shownFailures++ < 20) {
+                        sender.sendMessage("§c" + entryResult.entry().label() + ": " + entryResult.error());
+                    }
+                }
+                sender.sendMessage("§aГотово: успешно §e" + result.successCount() + "§a, с ошибкой §e" + result.failureCount()
+                        + "§a, время §e" + result.elapsedMillis() + " мс");
             });
+        });
+    }
+
+    /**
+     * Разбирает список «игрок:количество» через запятую или файл из папки плагина
+     * (по одной записи «игрок количество» или «игрок:количество» на строку).
+     * Аргумент с точкой или слешем — всегда имя файла: в нике таких символов не бывает,
+     * а опечатка в имени файла не должна превращаться в выдачу игроку с таким «ником».
+     */
+    private List<BulkBonusUpdate.Entry> parseBulkEntries(String source, BulkBonusUpdate.Mode mode) throws IOException {
+        File dataFolder = WarpBonusPlugin.getInstance().getDataFolder();
+        File file = new File(dataFolder, source);
+        List<String> tokens = new ArrayList<>();
+
+        boolean looksLikeFile = source.contains(".") || source.contains("/") || source.contains("\\");
+        if (!source.contains(":") && !source.contains(",") && (looksLikeFile || file.isFile())) {
+            if (!file.isFile()) {
+                throw new IllegalArgumentException("Файл не найден: " + source);
+            }
+            if (!file.getCanonicalPath().startsWith(dataFolder.getCanonicalPath() + File.separator)) {
+                throw new IllegalArgumentException("Файл должен находиться в папке плагина");
+            }
+            for (String line : Files.readAllLines(file.toPath(), StandardCharsets.UTF_8)) {
+                line = line.trim();
+                if (!line.isEmpty() && !line.startsWith("#")) {
+                    tokens.add(line.replaceFirst("\\s+", ":"));
+                }
+            }
+        } else {
+            for (String token : source.split("[,;\\s]+")) {
+                if (!token.isEmpty()) {
+                    tokens.add(token);
+                }
+            }
+        }
+
+        List<BulkBonusUpdate.Entry> entries = new ArrayList<>(tokens.size());
+        for (String token : tokens) {
+            String[] parts = token.split(":", 2);
+            if (parts.length == 1 && mode == BulkBonusUpdate.Mode.ADD) {
+                entries.add(BulkBonusUpdate.Entry.of(parts[0], 1));
+                continue;
+            }
+            try {
+                entries.add(BulkBonusUpdate.Entry.of(parts[0], Integer.parseInt(parts[1].trim())));
+            } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                throw new IllegalArgumentException("Некорректная запись: " + token);
+            }
         }
+        return entries;
     }
 
-    private UUID getUUIDFromName(String playerName) {
-        Player onlinePlayer = Bukkit.getPlayer(playerName);
-        if (onlinePlayer != null) {
-            return onlinePlayer.getUniqueId();
+    private void handleAudit(CommandSender sender, String[] args) {
+        WarpLimitAudit audit = bonusManager.getAudit();
+        if (audit == null) {
+            sender.sendMessage("§cLuckPerms недоступен, аудит невозможен");
+            return;
         }
 
-        OfflinePlayer offlinePlayer = Bukkit.getOfflinePlayer(playerName);
-        if (offlinePlayer.hasPlayedBefore()) {
-            return offlinePlayer.getUniqueId();
+        boolean fix = false;
+        boolean allUsers = false;
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equalsIgnoreCase("fix")) {
+                fix = true;
+            } else if (args[i].equalsIgnoreCase("all")) {
+                allUsers = true;
+            } else {
+                sender.sendMessage("§cИспользование: /warpbonus audit [fix] [all]");
+                return;
+            }
         }
 
-        return UUID.nameUUIDFromBytes(("OfflinePlayer:" + playerName).getBytes());
+        boolean started = audit.start(fix, allUsers, report -> {
+            sender.sendMessage("§6=== Аудит лимитов варпов ===");
+            sender.sendMessage("§eПроверено: §6" + report.checked() + "§e, расхождений: §6" + report.mismatches()
+                    + "§e, ошибок: §6" + report.errors() + "§e, время: §6" + report.elapsedMillis() + " мс");
+            for (WarpLimitAudit.Mismatch mismatch : report.sample()) {
+                sender.sendMessage("§7 " + mismatch.playerName() + ": ожидается §e" + mismatch.expected()
+                        + "§7, выдано §c" + (mismatch.actual().isEmpty() ? "ничего" : String.join(", ", mismatch.actual())));
+            }
+            if (report.mismatches() > report.sample().size()) {
+                sender.sendMessage("§7 ... и ещё " + (report.mismatches() - report.sample().size()) + " (полный прогресс — в консоли)");
+            }
+            if (report.fixed() > 0) {
+                sender.sendMessage("§aПересчитаны права §e" + report.fixed() + "§a игроков");
+            } else if (report.mismatches() > 0) {
+                sender.sendMessage("§eДля исправления выполните §6/warpbonus audit fix");
+            }
+        });
+        if (started) {
+            sender.sendMessage("§aАудит запущен" + (fix ? " с исправлением" : "") + ", прогресс выводится в консоль");
+        } else {
+            sender.sendMessage("§cАудит уже выполняется");
+        }
+    }
+
+    private void handleExport(CommandSender sender, String[] args) {
+        BonusTransfer transfer = bonusManager.getTransfer();
+        String name = args.length >= 2 ? args[1]
+                : "exports/bonus_warps-" + new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date()) + ".txt.gz";
+        File target;
+        try {
+            target = transfer.resolve(name);
+        } catch (IOException | IllegalArgumentException e) {
+            sender.sendMessage("§c" + e.getMessage());
+            return;
+        }
+
+        sender.sendMessage("§eЭкспорт бонусных варпов в §6" + name + "§e...");
+        transfer.export(target).whenComplete((result, error) -> {
+            if (error != null) {
+                sender.sendMessage("§cОшибка экспорта: " + error.getMessage());
+                return;
+            }
+            sender.sendMessage("§aЭкспортировано записей: §e" + result.records() + "§a (" + (result.bytes() / 1024) + " КБ), время §e"
+                    + result.elapsedMillis() + " мс");
+        });
+    }
+
+    private void handleImport(CommandSender sender, String[] args) {
+        BonusTransfer transfer = bonusManager.getTransfer();
+        boolean replace = args.length >= 3 && args[2].equalsIgnoreCase("replace");
+        boolean confirmed = args.length >= 4 && args[3].equalsIgnoreCase("confirm");
+        File source;
+        try {
+            source = transfer.resolve(args[1]);
+        } catch (IOException | IllegalArgumentException e) {
+            sender.sendMessage("§c" + e.getMessage());
+            return;
+        }
+        if (!source.isFile()) {
+            sender.sendMessage("§cФайл " + args[1] + " не найден в папке плагина");
+            return;
+        }
+
+        if (replace && !confirmed) {
+            previewReplace(sender, transfer, source, args[1]);
+            return;
+        }
+
+        sender.sendMessage("§eИмпорт бонусных варпов из §6" + args[1] + "§e" + (replace ? " с заменой всех данных" : "") + "...");
+        transfer.importFrom(source, replace).whenComplete((result, error) -> {
+            if (error != null) {
+                sender.sendMessage("§cОшибка импорта: " + error.getMessage());
+                return;
+            }
+            sender.sendMessage("§aИмпорт завершён: прочитано §e" + result.read() + "§a, изменено §e" + result.changed()
+                    + "§a, без изменений §e" + result.unchanged() + (replace ? "§a, удалено §e" + result.removed() : "")
+                    + "§a, некорректных строк §e" + result.invalid() + "§a, время §e" + result.elapsedMillis() + " мс");
+        });
+    }
+
+    /**
+     * Замена удаляет бонусы всех, кого нет в файле, поэтому сначала только показываем, что произойдёт.
+     */
+    private void previewReplace(CommandSender sender, BonusTransfer transfer, File source, String name) {
+        sender.sendMessage("§eПроверка файла §6" + name + "§e...");
+        transfer.planReplace(source).whenComplete((plan, error) -> {
+            if (error != null) {
+                sender.sendMessage("§cОшибка проверки файла: " + error.getMessage());
+                return;
+            }
+            if (plan.refusal() != null) {
+                sender.sendMessage("§cЗамена невозможна: " + plan.refusal());
+                return;
+            }
+            sender.sendMessage("§eЗаписей в файле: §6" + plan.read() + "§e, будут лишены бонусов: §6" + plan.toRemove() + "§e игроков");
+            sender.sendMessage("§eДля применения выполните §6/warpbonus import " + name + " replace confirm");
+        });
+    }
+
+    private void handleReload(CommandSender sender) {
+        WarpBonusPlugin.getInstance().reloadConfig();
+        bonusManager.reloadSettings();
+        Bukkit.getScheduler().runTaskAsynchronously(WarpBonusPlugin.getInstance(), () -> {
+            if (bonusManager.reloadData()) {
+                sender.sendMessage("§aДанные WarpBonus перезагружены");
+            } else {
+                sender.sendMessage("§cНе удалось перечитать хранилище, оставлены прежние данные (подробности в консоли)");
+            }
+        });
+    }
+
+    private void handleStats(CommandSender sender) {
+        sender.sendMessage("§6=== Статистика WarpBonus ===");
+        sender.sendMessage("§eЗаписей в хранилище: §6" + bonusManager.getStoredCount());
+        sender.sendMessage("§eОжидают записи на диск: §6" + bonusManager.getPendingWrites());
+        sender.sendMessage("§eСбросов на диск: §6" + bonusManager.getFlushCount()
+                + "§e (записей: §6" + bonusManager.getFlushedEntries()
+                + "§e, последний: §6" + bonusManager.getLastFlushMillis() + " мс§e)");
+
+        RecalculationQueue queue = bonusManager.getRecalculationQueue();
+        sender.sendMessage("§eЗапросов пересчёта: §6" + queue.getTriggersReceived()
+                + "§e, выполнено пересчётов: §6" + queue.getRecalculationsExecuted()
+                + "§e, в ожидании: §6" + queue.getPendingCount());
+        sender.sendMessage("§eСохранений в LuckPerms: §6" + bonusManager.getWritesApplied()
+                + "§e, пропущено (лимит не изменился): §6" + bonusManager.getWritesSkipped());
+        if (bonusManager.getPermissionUpdater() != null) {
+            RecalculationScheduler scheduler = bonusManager.getPermissionUpdater().getScheduler();
+            sender.sendMessage("§eПересчётов выполняется: §6" + scheduler.getInFlight() + "§e, ждут очереди: §6" + scheduler.getWaiting());
+            for (RecalculationScheduler.Lane lane : RecalculationScheduler.Lane.values()) {
+                sender.sendMessage("§7  " + lane.getId() + ": выполняется " + scheduler.getInFlight(lane)
+                        + ", в очереди " + scheduler.getWaiting(lane) + ", всего запущено " + scheduler.getStarted(lane));
+            }
+        }
+        BonusSync bonusSync = bonusManager.getBonusSync();
+        if (bonusSync != null) {
+            sender.sendMessage("§eСинхронизация (" + bonusSync.getTransportName() + "): отправлено §6" + bonusSync.getSent()
+                    + "§e, получено §6" + bonusSync.getReceived());
+        }
+        PlayerNameCache nameCache = bonusManager.getNameCache();
+        sender.sendMessage("§eКэш ников: §6" + nameCache.size() + "§e записей, попаданий §6"
+                + String.format(Locale.ROOT, "%.1f", nameCache.getHitRate() * 100) + "%§e ("
+                + nameCache.getHits() + "/" + (nameCache.getHits() + nameCache.getMisses()) + ")");
+        sender.sendMessage("§eВременных выдач: §6" + bonusManager.getTemporaryGrants().size());
+        if (bonusManager.getOfflineJobs() != null) {
+            sender.sendMessage("§eФоновых заданий пересчёта групп: §6" + bonusManager.getOfflineJobs().getActiveJobs());
+        }
+
+        WarpBonusMetrics metrics = bonusManager.getMetrics();
+        sender.sendMessage("§6Задержки §7(ошибок пересчёта: " + metrics.getUpdateErrors()
+                + ", не успели при подключении: " + metrics.getLoginTimeouts()
+                + ", досчитано после входа: " + metrics.getJoinFallbacks() + ")");
+        for (LatencyHistogram histogram : metrics.getHistograms()) {
+            sender.sendMessage("§e" + histogram.getName() + ": §7" + WarpBonusMetrics.format(histogram));
+        }
+    }
+
+    /**
+     * Разбирает срок вида 30d, 12h, 45m, 90s или их сочетание (1d12h). Возвращает миллисекунды или -1.
+     */
+    static long parseDuration(String input) {
+        long total = 0;
+        long number = -1;
+        for (char c : input.toLowerCase(Locale.ROOT).toCharArray()) {
+            if (c >= '0' && c <= '9') {
+                number = (number < 0 ? 0 : number * 10) + (c - '0');
+                if (number > 100_000) return -1;
+                continue;
+            }
+            long unit = switch (c) {
+                case 'w' -> 7L * 24 * 60 * 60 * 1000;
+                case 'd' -> 24L * 60 * 60 * 1000;
+                case 'h' -> 60L * 60 * 1000;
+                case 'm' -> 60L * 1000;
+                case 's' -> 1000L;
+                default -> -1;
+            };
+            if (unit < 0 || number < 0) return -1;
+            total += number * unit;
+            number = -1;
+        }
+        return number >= 0 ? -1 : total;
+    }
+
+    static String formatDuration(long millis) {
+        long seconds = millis / 1000;
+        long days = seconds / 86400;
+        long hours = seconds % 86400 / 3600;
+        long minutes = seconds % 3600 / 60;
+        if (days > 0) return days + " д " + hours + " ч";
+        if (hours > 0) return hours + " ч " + minutes + " мин";
+        if (minutes > 0) return minutes + " мин";
+        return seconds % 60 + " с";
     }
 
     @Override
@@ -201,18 +588,26 @@ public class WarpBonusCommand implements CommandExecutor, TabCompleter {
         List<String> completions = new ArrayList<>();
 
         if (args.length == 1) {
-            completions.addAll(Arrays.asList("add", "set", "check", "list"));
-        } else if (args.length == 2 && !args[0].equalsIgnoreCase("list")) {
-            String partialName = args[1].toLowerCase();
-            for (Player player : Bukkit.getOnlinePlayers()) {
-                if (player.getName().toLowerCase().startsWith(partialName)) {
-                    completions.add(player.getName());
-                }
-            }
+            completions.addAll(Arrays.asList("add", "set", "check", "list", "bulk", "audit", "export", "import", "reload", "stats"));
+        } else if (args.length == 2 && PLAYER_SUBCOMMANDS.contains(args[0].toLowerCase())) {
+            // Онлайн-игроки и обладатели бонусов, поиск по префиксу в индексе ников
+            completions.addAll(bonusManager.getNameIndex().complete(args[1], MAX_NAME_SUGGESTIONS));
+        } else if (args.length == 3 && args[0].equalsIgnoreCase("list")) {
+            completions.addAll(Arrays.asList("amount", "name"));
+        } else if (args.length >= 2 && args.length <= 3 && args[0].equalsIgnoreCase("audit")) {
+            completions.addAll(Arrays.asList("fix", "all"));
+        } else if (args.length == 3 && args[0].equalsIgnoreCase("import")) {
+            completions.addAll(Arrays.asList("merge", "replace"));
+        } else if (args.length == 4 && args[0].equalsIgnoreCase("import") && args[2].equalsIgnoreCase("replace")) {
+            completions.add("confirm");
+        } else if (args.length == 2 && args[0].equalsIgnoreCase("bulk")) {
+            completions.addAll(Arrays.asList("add", "set"));
         } else if (args.length == 3 && args[0].equalsIgnoreCase("add")) {
             completions.add("1");
             completions.add("5");
             completions.add("10");
+        } else if (args.length == 4 && args[0].equalsIgnoreCase("add")) {
+            completions.addAll(Arrays.asList("1d", "7d", "30d"));
         }
 
         return completions;
@@ -0,0 +1,79 @@
+package com.flyaway.warpbonus;
+
+/**
+ * Реализация {@link WarpBonusCountersMBean}: значения каждый раз берутся из менеджера.
+ */
+public class WarpBonusCounters implements WarpBonusCountersMBean {
+    private final WarpBonusManager bonusManager;
+
+    public WarpBonusCounters(WarpBonusManager bonusManager) {
+        this.bonusManager = bonusManager;
+    }
+
+    @Override
+    public int getStoredCount() {
+        return bonusManager.getStoredCount();
+    }
+
+    @Override
+    public int getPendingWrites() {
+        return bonusManager.getPendingWrites();
+    }
+
+    @Override
+    public long getFlushCount() {
+        return bonusManager.getFlushCount();
+    }
+
+    @Override
+    public long getRecalculationTriggers() {
+        return bonusManager.getRecalculationQueue().getTriggersReceived();
+    }
+
+    @Override
+    public long getRecalculationsExecuted() {
+        return bonusManager.getRecalculationQueue().getRecalculationsExecuted();
+    }
+
+    @Override
+    public int getRecalculationsPending() {
+        return bonusManager.getRecalculationQueue().getPendingCount();
+    }
+
+    @Override
+    public int getRecalculationsInFlight() {
+        WarpPermissionUpdater updater = bonusManager.getPermissionUpdater();
+        return updater != null ? updater.getScheduler().getInFlight() : 0;
+    }
+
+    @Override
+    public int getRecalculationsWaiting() {
+        WarpPermissionUpdater updater = bonusManager.getPermissionUpdater();
+        return updater != null ? updater.getScheduler().getWaiting() : 0;
+    }
+
+    @Override
+    public long getWritesApplied() {
+        return bonusManager.getWritesApplied();
+    }
+
+    @Override
+    public long getWritesSkipped() {
+        return bonusManager.getWritesSkipped();
+    }
+
+    @Override
+    public long getUpdateErrors() {
+        return bonusManager.getMetrics().getUpdateErrors();
+    }
+
+    @Override
+    public long getLoginTimeouts() {
+        return bonusManager.getMetrics().getLoginTimeouts();
+    }
+
+    @Override
+    public long getJoinFallbacks() {
+        return bonusManager.getMetrics().getJoinFallbacks();
+    }
+}
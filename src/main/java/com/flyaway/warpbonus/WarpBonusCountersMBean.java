@@ -0,0 +1,33 @@
+package com.flyaway.warpbonus;
+
+/**
+ * Счётчики плагина, доступные через JMX.
+ */
+public interface WarpBonusCountersMBean {
+
+    int getStoredCount();
+
+    int getPendingWrites();
+
+    long getFlushCount();
+
+    long getRecalculationTriggers();
+
+    long getRecalculationsExecuted();
+
+    int getRecalculationsPending();
+
+    int getRecalculationsInFlight();
+
+    int getRecalculationsWaiting();
+
+    long getWritesApplied();
+
+    long getWritesSkipped();
+
+    long getUpdateErrors();
+
+    long getLoginTimeouts();
+
+    long getJoinFallbacks();
+}
@@ -1,198 +1,754 @@
 package com.flyaway.warpbonus;
 
 import net.luckperms.api.LuckPerms;
-import net.luckperms.api.model.group.Group;
-import net.luckperms.api.model.group.GroupManager;
-import net.luckperms.api.model.user.User;
-import net.luckperms.api.model.user.UserManager;
-import net.luckperms.api.node.Node;
-import net.luckperms.api.query.QueryOptions;
 import org.bukkit.Bukkit;
 import org.bukkit.OfflinePlayer;
-import org.bukkit.configuration.file.FileConfiguration;
-import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.entity.Player;
 import org.bukkit.plugin.RegisteredServiceProvider;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 
 public class WarpBonusManager {
+    static final String WARP_PERMISSION_PREFIX = "axplayerwarps.warps.";
+
     private final WarpBonusPlugin plugin;
-    private final File dataFile;
-    private FileConfiguration dataConfig;
+    private final BonusStore bonusStore;
+    private final BonusCoordinator coordinator;
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final AtomicLong flushCount = new AtomicLong();
+    private final AtomicLong flushedEntries = new AtomicLong();
+    private volatile long lastFlushMillis;
     private LuckPerms luckPerms;
-
-    public WarpBonusManager(WarpBonusPlugin plugin) {
+    private GroupLimitIndex groupLimitIndex;
+    private WarpPermissionUpdater permissionUpdater;
+    private final GroupMembershipIndex membershipIndex = new GroupMembershipIndex();
+    private final PlayerNameIndex nameIndex = new PlayerNameIndex();
+    private final PlayerNameCache nameCache;
+    private final ExecutorService bulkExecutor;
+    private final ExecutorService recalculationExecutor;
+    private OfflineRecalculationJobs offlineJobs;
+    private WarpLimitAudit audit;
+    private BonusSync bonusSync;
+    private final WarpBonusMetrics metrics;
+    private final TemporaryGrants temporaryGrants;
+    private final BonusTransfer transfer;
+
+    /**
+     * Бросает исключение, если хранилище бонусов недоступно: работать с пустыми данными нельзя,
+     * иначе пересчёт прав отнимет бонусы у всех игроков.
+     */
+    public WarpBonusManager(WarpBonusPlugin plugin) throws IOException {
         this.plugin = plugin;
-        this.dataFile = new File(plugin.getDataFolder(), "bonus_warps.yml");
 
         if (!plugin.getDataFolder().exists()) {
             plugin.getDataFolder().mkdirs();
         }
 
-        loadData();
+        this.metrics = new WarpBonusMetrics(plugin.getLogger());
+        this.bonusStore = new BonusStore(createStorage(), plugin.getLogger());
+        long loadStart = System.nanoTime();
+        try {
+            bonusStore.load();
+        } catch (IOException e) {
+            bonusStore.getStorage().close();
+            throw e;
+        }
+        metrics.getStorageLoad().recordSince(loadStart);
+        plugin.getLogger().info("Загружено записей о бонусных варпах: " + bonusStore.size()
+                + " (хранилище: " + bonusStore.getStorage().getName() + ")");
+
+        this.temporaryGrants = new TemporaryGrants(new File(plugin.getDataFolder(), "temporary_grants.yml"),
+                plugin.getLogger(), this::onGrantsExpired);
+        try {
+            // Без списка выдач их истечения потерялись бы, а временные бонусы стали бы постоянными
+            temporaryGrants.load();
+        } catch (IOException e) {
+            bonusStore.getStorage().close();
+            throw e;
+        }
+
+        this.nameCache = new PlayerNameCache(plugin.getConfig().getInt("names.cache-size", 10000),
+                TimeUnit.MINUTES.toMillis(plugin.getConfig().getLong("names.cache-ttl-minutes", 60)));
+
+        AtomicInteger bulkThreadId = new AtomicInteger();
+        this.bulkExecutor = Executors.newFixedThreadPool(Math.max(1, plugin.getConfig().getInt("bulk.threads", 2)), r -> {
+            Thread thread = new Thread(r, "WarpBonus-Bulk-" + bulkThreadId.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Отдельно от массового пула: его задачи ждут ответов базы, а запуск пересчёта при входе ждать не должен
+        this.recalculationExecutor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "WarpBonus-Recalculation");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        long checkInterval = plugin.getConfig().getLong("storage.file-check-interval", 30) * 20L;
+        if (checkInterval > 0) {
+            Bukkit.getScheduler().runTaskTimerAsynchronously(plugin, this::checkDataFile, checkInterval, checkInterval);
+        }
+
+        long flushInterval = Math.max(1, plugin.getConfig().getLong("storage.flush-interval", 5)) * 20L;
+        Bukkit.getScheduler().runTaskTimerAsynchronously(plugin, this::flushData, flushInterval, flushInterval);
 
         RegisteredServiceProvider<LuckPerms> provider = Bukkit.getServicesManager().getRegistration(LuckPerms.class);
         if (provider != null) {
             this.luckPerms = provider.getProvider();
+            this.groupLimitIndex = new GroupLimitIndex(luckPerms.getGroupManager());
+            groupLimitIndex.rebuild();
+            membershipIndex.rebuild(luckPerms.getUserManager());
+
+            RecalculationScheduler scheduler = new RecalculationScheduler(plugin.getConfig().getInt("recalculation.max-concurrent", 16),
+                    recalculationExecutor, metrics);
+            this.permissionUpdater = new WarpPermissionUpdater(luckPerms, groupLimitIndex, this::getBonusWarps, scheduler, metrics, plugin.getLogger());
+            configureScheduler();
+        }
+
+        this.coordinator = new BonusCoordinator(bonusStore, permissionUpdater, bulkExecutor, new ServerEnvironment(),
+                metrics, plugin.getLogger(), recalculation -> new RecalculationQueue(plugin,
+                        plugin.getConfig().getLong("recalculation.debounce-ticks", 20), recalculation));
+        configureCoordinator();
+
+        if (luckPerms != null) {
+            this.offlineJobs = new OfflineRecalculationJobs(luckPerms, plugin.getLogger(),
+                    new File(plugin.getDataFolder(), "jobs"), this::awaitAll);
+            configureOfflineJobs();
+            offlineJobs.resumePending();
+
+            this.audit = new WarpLimitAudit(luckPerms, groupLimitIndex, permissionUpdater, this::getBonusWarps,
+                    () -> bonusStore.view().keySet(), ids -> recalculateUsers(ids, "аудит"), plugin.getLogger());
+            audit.configure(plugin.getConfig().getInt("bulk.batch-size", 100));
+
+            if (plugin.getConfig().getBoolean("sync.enabled", false)) {
+                enableSync();
+            }
+        }
+
+        // После /reload игроки уже онлайн, события входа для них не будет
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            nameIndex.setTracked(player.getUniqueId(), true);
+            rememberName(player.getUniqueId(), player.getName());
+        }
+        bulkExecutor.execute(this::warmUpNames);
+
+        Bukkit.getScheduler().runTaskTimerAsynchronously(plugin, temporaryGrants::tick, 20L, 20L);
+
+        this.transfer = new BonusTransfer(bonusStore, plugin.getDataFolder(),
+                entries -> applyBulk(BulkBonusUpdate.Mode.SET, entries, BonusWarpsChangeEvent.Cause.IMPORT), plugin.getLogger());
+
+        long summaryInterval = plugin.getConfig().getLong("metrics.summary-interval", 300);
+        if (summaryInterval > 0) {
+            Bukkit.getScheduler().runTaskTimerAsynchronously(plugin,
+                    () -> metrics.logSummary(getWritesApplied(), getWritesSkipped(), summaryInterval),
+                    summaryInterval * 20L, summaryInterval * 20L);
+        }
+        if (plugin.getConfig().getBoolean("metrics.jmx", true)) {
+            metrics.registerMBeans(new WarpBonusCounters(this));
         }
     }
 
-    private void loadData() {
-        if (!dataFile.exists()) {
-            dataConfig = new YamlConfiguration();
-            saveData();
-        } else {
-            dataConfig = YamlConfiguration.loadConfiguration(dataFile);
+    /**
+     * Открывает настроенное хранилище. Запасного варианта нет: после переноса bonus_warps.yml
+     * переименован, и подмена хранилища означала бы работу с пустыми данными.
+     */
+    private BonusStorage createStorage() throws IOException {
+        File yamlFile = new File(plugin.getDataFolder(), "bonus_warps.yml");
+        String type = plugin.getConfig().getString("storage.type", "yaml").toLowerCase();
+
+        switch (type) {
+            case "yaml":
+                return new YamlBonusStorage(yamlFile, plugin.getLogger());
+            case "sqlite":
+            case "mysql":
+                BonusStorage storage = type.equals("sqlite")
+                        ? SqlBonusStorage.sqlite(new File(plugin.getDataFolder(), "bonus_warps.db"), plugin.getLogger())
+                        : SqlBonusStorage.mysql(plugin.getConfig().getString("storage.mysql.host", "localhost"),
+                                plugin.getConfig().getInt("storage.mysql.port", 3306),
+                                plugin.getConfig().getString("storage.mysql.database", "minecraft"),
+                                plugin.getConfig().getString("storage.mysql.username", "root"),
+                                plugin.getConfig().getString("storage.mysql.password", ""),
+                                plugin.getConfig().getString("storage.mysql.ssl-mode", "REQUIRED"),
+                                plugin.getConfig().getBoolean("storage.mysql.allow-public-key-retrieval", false),
+                                plugin.getLogger());
+                try {
+                    StorageMigrator.migrateFromYaml(yamlFile, storage, plugin.getLogger());
+                } catch (IOException e) {
+                    storage.close();
+                    throw e;
+                }
+                return storage;
+            default:
+                throw new IOException("Неизвестный тип хранилища: " + type);
         }
     }
 
-    private void saveData() {
-        try {
-            dataConfig.save(dataFile);
-        } catch (IOException e) {
-            plugin.getLogger().log(Level.SEVERE, "Не удалось сохранить bonus_warps.yml", e);
+    /**
+     * Включает синхронизацию с другими серверами: изменения сразу пишутся в общее хранилище
+     * и рассылаются через messaging-service LuckPerms.
+     */
+    private void enableSync() {
+        String storageName = bonusStore.getStorage().getName();
+        if (storageName.equals("yaml")) {
+            plugin.getLogger().warning("Синхронизация между серверами требует общего хранилища (storage.type: mysql), синхронизация отключена");
+            return;
+        }
+        if (!storageName.equals("mysql")) {
+            plugin.getLogger().warning("Хранилище " + storageName + " обычно не является общим для нескольких серверов");
         }
+
+        bonusStore.setWriteThrough(true);
+        this.bonusSync = new BonusSync(bonusStore, bulkExecutor, this::onRemoteChange, plugin.getLogger(),
+                receiver -> new LuckPermsSyncTransport(luckPerms, receiver));
+        plugin.getLogger().info("Синхронизация бонусов включена (канал: " + bonusSync.getTransportName() + ")");
     }
 
-    public int getBonusWarps(UUID playerId) {
-        loadData();
-        return dataConfig.getInt(playerId.toString(), 0);
+    /**
+     * Бонус игрока изменён на другом сервере: права пересчитываются, только если игрок загружен здесь.
+     */
+    private void onRemoteChange(UUID playerId, BonusStore.Change change) {
+        fireChange(playerId, change, BonusWarpsChangeEvent.Cause.SYNC);
+        updateSuggestion(playerId, change);
+        if (luckPerms.getUserManager().isLoaded(playerId)) {
+            requestRecalculation(playerId);
+        }
     }
 
-    public void setBonusWarps(UUID playerId, int amount) {
-        loadData();
-        if (amount > 0) {
-            dataConfig.set(playerId.toString(), amount);
-        } else {
-            dataConfig.set(playerId.toString(), null);
+    private void publishChange(UUID playerId) {
+        if (bonusSync != null) {
+            bonusSync.publish(playerId);
         }
-        saveData();
     }
 
-    public void addBonusWarp(UUID playerId) {
-        int current = getBonusWarps(playerId);
-        int newAmount = current + 1;
-        setBonusWarps(playerId, newAmount);
-        plugin.getLogger().info("Добавлен бонусный варп игроку " + playerId + ". Теперь бонусов: " + newAmount);
+    /**
+     * Оповещает другие плагины об изменении. Событие не создаётся, если на него никто не подписан.
+     */
+    private void fireChange(UUID playerId, BonusStore.Change change, BonusWarpsChangeEvent.Cause cause) {
+        if (change.isChanged() && BonusWarpsChangeEvent.getHandlerList().getRegisteredListeners().length > 0) {
+            Bukkit.getPluginManager().callEvent(new BonusWarpsChangeEvent(playerId, change.previous(), change.current(), cause));
+        }
     }
 
-    public void updatePlayerPermissions(UUID playerId, String playerName) {
-        if (luckPerms == null) return;
+    /**
+     * Пул для фоновых операций плагина (массовые изменения, поиск ников, вызовы API).
+     */
+    public Executor getExecutor() {
+        return bulkExecutor;
+    }
 
-        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
-            try {
-                User user = getUser(playerId);
-                if (user == null) {
-                    plugin.getLogger().warning("Не удалось получить пользователя: " + playerName);
-                    return;
-                }
+    public BonusSync getBonusSync() {
+        return bonusSync;
+    }
+
+    public WarpBonusMetrics getMetrics() {
+        return metrics;
+    }
 
-                int groupLimit = getGroupWarpLimit(user);
-                int bonus = getBonusWarps(playerId);
-                int totalWarps = groupLimit + bonus;
+    public void shutdown() {
+        metrics.unregisterMBeans();
+        if (bonusSync != null) {
+            bonusSync.close();
+        }
+        if (offlineJobs != null) {
+            offlineJobs.shutdown();
+        }
+        if (audit != null) {
+            audit.shutdown();
+        }
+        transfer.shutdown();
+        bulkExecutor.shutdown();
+        try {
+            bulkExecutor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        recalculationExecutor.shutdown();
+        flushData();
+        bonusStore.close();
+    }
 
-                removeOldWarpPermissions(user);
+    public void reloadSettings() {
+        coordinator.getRecalculationQueue().setQuietTicks(plugin.getConfig().getLong("recalculation.debounce-ticks", 20));
+        configureCoordinator();
+        configureOfflineJobs();
+        nameCache.configure(plugin.getConfig().getInt("names.cache-size", 10000),
+                TimeUnit.MINUTES.toMillis(plugin.getConfig().getLong("names.cache-ttl-minutes", 60)));
+        if (permissionUpdater != null) {
+            permissionUpdater.getScheduler().setMaxConcurrent(plugin.getConfig().getInt("recalculation.max-concurrent", 16));
+            configureScheduler();
+            audit.configure(plugin.getConfig().getInt("bulk.batch-size", 100));
+        }
+    }
 
-                String permission = "axplayerwarps.warps." + totalWarps;
-                user.data().add(Node.builder(permission).value(true).build());
+    private void configureScheduler() {
+        permissionUpdater.getScheduler().configureBulk(plugin.getConfig().getInt("bulk.max-concurrent", 8),
+                plugin.getConfig().getDouble("bulk.rate-per-second", 100));
+    }
 
-                luckPerms.getUserManager().saveUser(user);
+    private void configureCoordinator() {
+        coordinator.configure(plugin.getConfig().getLong("recalculation.login-timeout-ms", 2000),
+                plugin.getConfig().getInt("bulk.batch-size", 100));
+    }
 
-                plugin.getLogger().info("Обновлены права для " + playerName +
-                        " (группа: " + groupLimit + ", бонусы: " + bonus + ", итого: " + totalWarps + ")");
+    private void configureOfflineJobs() {
+        if (offlineJobs != null) {
+            offlineJobs.configure(plugin.getConfig().getInt("bulk.batch-size", 100),
+                    plugin.getConfig().getLong("bulk.offline.batch-delay-ms", 500));
+        }
+    }
 
-                updateOnlinePlayer(playerId);
+    /**
+     * Перечитывает хранилище. Если оно недоступно, в памяти остаются прежние данные; возвращает false.
+     */
+    public boolean reloadData() {
+        long start = System.nanoTime();
+        try {
+            bonusStore.load();
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.SEVERE, "Не удалось перезагрузить бонусные варпы из хранилища "
+                    + bonusStore.getStorage().getName() + ", используются прежние данные", e);
+            return false;
+        }
+        metrics.getStorageLoad().recordSince(start);
+        plugin.getLogger().info("Бонусные варпы перезагружены, записей: " + bonusStore.size());
+        bulkExecutor.execute(this::warmUpNames);
+        return true;
+    }
 
-            } catch (Exception e) {
-                plugin.getLogger().log(Level.SEVERE, "Ошибка при обновлении прав игрока " + playerName, e);
+    private void checkDataFile() {
+        try {
+            if (bonusStore.reloadIfChanged()) {
+                plugin.getLogger().info("Обнаружено изменение хранилища, данные перезагружены (записей: " + bonusStore.size() + ")");
             }
-        });
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.SEVERE, "Не удалось перечитать изменённое хранилище бонусных варпов, используются прежние данные", e);
+        }
+    }
+
+    public int getBonusWarps(UUID playerId) {
+        return bonusStore.get(playerId);
+    }
+
+    /**
+     * Устанавливает бонус игрока и возвращает прежнее значение.
+     */
+    public int setBonusWarps(UUID playerId, int amount, BonusWarpsChangeEvent.Cause cause) {
+        BonusStore.Change change = bonusStore.set(playerId, amount);
+        afterChange(playerId, change, cause);
+        return change.previous();
     }
 
-    private User getUser(UUID playerId) {
-        UserManager userManager = luckPerms.getUserManager();
-        User user = userManager.getUser(playerId);
-        if (user == null) {
-            user = userManager.loadUser(playerId).join();
+    /**
+     * Атомарно изменяет бонус игрока на delta и возвращает новое значение.
+     */
+    public int incrementBonusWarps(UUID playerId, int delta, BonusWarpsChangeEvent.Cause cause) {
+        BonusStore.Change change = bonusStore.add(playerId, delta);
+        afterChange(playerId, change, cause);
+        return change.current();
+    }
+
+    /**
+     * Устанавливает бонус, только если текущее значение равно ожидаемому. Возвращает, было ли применено изменение.
+     */
+    public boolean compareAndSetBonusWarps(UUID playerId, int expected, int amount, BonusWarpsChangeEvent.Cause cause) {
+        if (!bonusStore.compareAndSet(playerId, expected, amount)) {
+            return false;
         }
-        return user;
+        afterChange(playerId, new BonusStore.Change(expected, Math.max(0, amount)), cause);
+        return true;
     }
 
-    private int getGroupWarpLimit(User user) {
-        int maxLimit = 0;
-        String primaryGroup = user.getPrimaryGroup();
-        GroupManager groupManager = luckPerms.getGroupManager();
-        Group group = groupManager.getGroup(primaryGroup);
+    private void afterChange(UUID playerId, BonusStore.Change change, BonusWarpsChangeEvent.Cause cause) {
+        coordinator.afterChange(playerId, change, cause, RecalculationScheduler.Lane.ADMIN);
+        scheduleFlushIfNeeded();
+    }
 
-        if (group != null) {
-            maxLimit = Math.max(maxLimit, getWarpLimitFromNodes(group.getNodes()));
+    private void scheduleFlushIfNeeded() {
+        int threshold = plugin.getConfig().getInt("storage.flush-threshold", 500);
+        if (bonusStore.getPendingWrites() >= threshold && flushScheduled.compareAndSet(false, true)) {
+            Bukkit.getScheduler().runTaskAsynchronously(plugin, this::flushData);
         }
+    }
 
-        Collection<Group> inheritedGroups = user.getInheritedGroups(QueryOptions.nonContextual());
-        for (Group inheritedGroup : inheritedGroups) {
-            maxLimit = Math.max(maxLimit, getWarpLimitFromNodes(inheritedGroup.getNodes()));
+    private void flushData() {
+        flushScheduled.set(false);
+        long start = System.nanoTime();
+        int flushed = bonusStore.flush();
+        if (flushed > 0) {
+            metrics.getStorageFlush().recordSince(start);
+            lastFlushMillis = (System.nanoTime() - start) / 1_000_000L;
+            flushCount.incrementAndGet();
+            flushedEntries.addAndGet(flushed);
         }
+    }
 
-        return maxLimit;
+    public int getStoredCount() {
+        return bonusStore.size();
     }
 
-    private int getWarpLimitFromNodes(Collection<Node> nodes) {
-        int limit = 0;
-        for (Node node : nodes) {
-            String key = node.getKey();
-            if (key.startsWith("axplayerwarps.warps.") && node.getValue()) {
-                try {
-                    limit = Math.max(limit, Integer.parseInt(key.substring("axplayerwarps.warps.".length())));
-                } catch (NumberFormatException ignored) {
+    public int getPendingWrites() {
+        return bonusStore.getPendingWrites();
+    }
+
+    public long getFlushCount() {
+        return flushCount.get();
+    }
+
+    public long getFlushedEntries() {
+        return flushedEntries.get();
+    }
+
+    public long getLastFlushMillis() {
+        return lastFlushMillis;
+    }
+
+    /**
+     * Выдаёт бонусные варпы на время: они сразу прибавляются к бонусу и вычитаются по истечении срока.
+     * Возвращает новое количество бонусов.
+     */
+    public int addTemporaryBonusWarps(UUID playerId, int amount, long durationMillis) {
+        int newAmount = incrementBonusWarps(playerId, amount, BonusWarpsChangeEvent.Cause.TEMPORARY_GRANT);
+        temporaryGrants.add(playerId, amount, System.currentTimeMillis() + durationMillis);
+        return newAmount;
+    }
+
+    private void onGrantsExpired(UUID playerId, int amount) {
+        int newAmount = incrementBonusWarps(playerId, -amount, BonusWarpsChangeEvent.Cause.TEMPORARY_EXPIRED);
+        plugin.getLogger().info("Истёк срок временных бонусных варпов игрока " + playerId + " (" + amount + "). Теперь бонусов: " + newAmount);
+    }
+
+    public TemporaryGrants getTemporaryGrants() {
+        return temporaryGrants;
+    }
+
+    public int addBonusWarp(UUID playerId) {
+        int newAmount = incrementBonusWarps(playerId, 1, BonusWarpsChangeEvent.Cause.COMMAND);
+        plugin.getLogger().info("Добавлен бонусный варп игроку " + playerId + ". Теперь бонусов: " + newAmount);
+        return newAmount;
+    }
+
+    /**
+     * Запрашивает пересчёт прав игрока. Повторные запросы в течение периода тишины схлопываются в один.
+     */
+    public void requestRecalculation(UUID playerId) {
+        requestRecalculation(playerId, RecalculationScheduler.Lane.ADMIN);
+    }
+
+    public void requestRecalculation(UUID playerId, RecalculationScheduler.Lane lane) {
+        coordinator.requestRecalculation(playerId, lane);
+    }
+
+    public GroupLimitIndex getGroupLimitIndex() {
+        return groupLimitIndex;
+    }
+
+    public GroupMembershipIndex getMembershipIndex() {
+        return membershipIndex;
+    }
+
+    public RecalculationQueue getRecalculationQueue() {
+        return coordinator.getRecalculationQueue();
+    }
+
+    /**
+     * Пересчитывает права игрока без блокировки потоков. Результат — новый итоговый лимит варпов.
+     */
+    public CompletableFuture<Integer> updatePlayerPermissions(UUID playerId, RecalculationScheduler.Lane lane) {
+        return coordinator.updatePlayerPermissions(playerId, lane);
+    }
+
+    /**
+     * Пересчёт в потоке AsyncPlayerPreLoginEvent с таймаутом recalculation.login-timeout-ms.
+     */
+    public void recalculateOnLogin(UUID playerId) {
+        coordinator.recalculateOnLogin(playerId);
+    }
+
+    public void verifyOnJoin(UUID playerId) {
+        coordinator.verifyOnJoin(playerId);
+    }
+
+    /**
+     * Пересчитывает права всех участников группы: загруженных — сразу по индексу участников,
+     * офлайн — фоновым заданием через поиск LuckPerms.
+     */
+    public void recalculateGroup(String groupName) {
+        Set<UUID> members = membershipIndex.getMembers(groupName);
+        if (!members.isEmpty()) {
+            recalculateUsers(members, "группа " + groupName);
+        }
+        if (offlineJobs != null && plugin.getConfig().getBoolean("bulk.offline.enabled", true)) {
+            offlineJobs.start(groupName);
+        }
+    }
+
+    public WarpPermissionUpdater getPermissionUpdater() {
+        return permissionUpdater;
+    }
+
+    public OfflineRecalculationJobs getOfflineJobs() {
+        return offlineJobs;
+    }
+
+    public BonusTransfer getTransfer() {
+        return transfer;
+    }
+
+    public WarpLimitAudit getAudit() {
+        return audit;
+    }
+
+    void awaitAll(Collection<UUID> playerIds) {
+        coordinator.awaitAll(playerIds);
+    }
+
+    /**
+     * Пересчитывает права сразу многих пользователей пачками. Возвращает количество обработанных пользователей.
+     */
+    public CompletableFuture<Integer> recalculateUsers(Collection<UUID> playerIds, String reason) {
+        return coordinator.recalculateUsers(playerIds, reason);
+    }
+
+    public long getWritesSkipped() {
+        return permissionUpdater != null ? permissionUpdater.getWritesSkipped() : 0;
+    }
+
+    public long getWritesApplied() {
+        return permissionUpdater != null ? permissionUpdater.getWritesApplied() : 0;
+    }
+
+    /**
+     * Массово изменяет бонусные варпы: ники разрешаются параллельно, все изменения сохраняются
+     * одной пачкой, после чего для изменённых игроков запрашивается пересчёт прав.
+     */
+    public CompletableFuture<BulkBonusUpdate.Result> applyBulk(BulkBonusUpdate.Mode mode, List<BulkBonusUpdate.Entry> entries,
+                                                              BonusWarpsChangeEvent.Cause cause) {
+        return coordinator.applyBulk(mode, entries, cause);
+    }
+
+    /**
+     * Формирует страницу списка бонусных варпов. Ники разрешаются только для строк этой страницы
+     * (при сортировке по нику обходится только индекс ников обладателей бонусов и игроков онлайн,
+     * записи с ещё неизвестным ником идут в конце).
+     * Не вызывать из основного потока.
+     */
+    public BonusListPage getBonusPage(int page, int pageSize, BonusListPage.Sort sort) {
+        int total = bonusStore.size();
+        int pages = Math.max(1, (total + pageSize - 1) / pageSize);
+        int currentPage = Math.min(Math.max(1, page), pages);
+        int offset = (currentPage - 1) * pageSize;
+
+        List<BonusListPage.Row> rows = new ArrayList<>(pageSize);
+        if (sort == BonusListPage.Sort.AMOUNT) {
+            for (Map.Entry<UUID, Integer> entry : bonusStore.page(offset, pageSize)) {
+                rows.add(new BonusListPage.Row(entry.getKey(), getPlayerName(entry.getKey()), entry.getValue()));
+            }
+        } else {
+            int index = 0;
+            for (UUID playerId : nameIndex.sortedIds()) {
+                if (rows.size() >= pageSize) break;
+                int amount = bonusStore.get(playerId);
+                if (amount > 0 && index++ >= offset) {
+                    rows.add(new BonusListPage.Row(playerId, nameIndex.getName(playerId), amount));
+                }
+            }
+            for (Map.Entry<UUID, Integer> entry : bonusStore.view().entrySet()) {
+                if (rows.size() >= pageSize) break;
+                if (!nameIndex.contains(entry.getKey()) && index++ >= offset) {
+                    rows.add(new BonusListPage.Row(entry.getKey(), getPlayerName(entry.getKey()), entry.getValue()));
                 }
             }
         }
-        return limit;
+        return new BonusListPage(rows, currentPage, pages, total);
     }
 
-    private void removeOldWarpPermissions(User user) {
-        Set<Node> toRemove = new HashSet<>();
-        for (Node node : user.getNodes()) {
-            if (node.getKey().startsWith("axplayerwarps.warps.")) {
-                toRemove.add(node);
+    /**
+     * Фоново заполняет индекс ников для всех обладателей бонусов, чтобы сортировка по нику была полной,
+     * и прогревает кэш ников. После перезагрузки данных из индекса убираются офлайн-игроки, потерявшие бонусы.
+     */
+    private void warmUpNames() {
+        for (UUID playerId : new ArrayList<>(nameIndex.sortedIds())) {
+            if (bonusStore.get(playerId) <= 0 && Bukkit.getPlayer(playerId) == null) {
+                nameIndex.setTracked(playerId, false);
+            }
+        }
+        for (UUID playerId : bonusStore.view().keySet()) {
+            nameIndex.setTracked(playerId, true);
+            if (!nameIndex.contains(playerId)) {
+                String playerName = lookupName(playerId);
+                if (playerName != null) {
+                    rememberName(playerId, playerName);
+                }
             }
         }
-        for (Node node : toRemove) {
-            user.data().remove(node);
+    }
+
+    public PlayerNameIndex getNameIndex() {
+        return nameIndex;
+    }
+
+    public PlayerNameCache getNameCache() {
+        return nameCache;
+    }
+
+    /**
+     * Запоминает соответствие ника и UUID (вход игрока, успешный поиск и т.п.) в кэше ников;
+     * в индекс ников он попадает, только если игрок онлайн или обладает бонусами.
+     */
+    public void rememberName(UUID playerId, String playerName) {
+        nameCache.put(playerId, playerName);
+        nameIndex.put(playerId, playerName);
+    }
+
+    /**
+     * Вход и выход игрока: в индексе ников остаются игроки онлайн и обладатели бонусов,
+     * ник вышедшего игрока без бонусов удаляется из индекса.
+     */
+    public void updateSuggestion(UUID playerId, boolean online) {
+        nameIndex.setTracked(playerId, online || bonusStore.get(playerId) > 0);
+    }
+
+    private void updateSuggestion(UUID playerId, BonusStore.Change change) {
+        nameIndex.setTracked(playerId, change.current() > 0 || Bukkit.getPlayer(playerId) != null);
+        if (change.current() > 0 && !nameIndex.contains(playerId)) {
+            // Например, выдача через API по UUID: ник нужен для подсказок
+            bulkExecutor.execute(() -> {
+                String playerName = lookupName(playerId);
+                if (playerName != null) {
+                    rememberName(playerId, playerName);
+                }
+            });
         }
     }
 
-    private void updateOnlinePlayer(UUID playerId) {
-        if (luckPerms == null) return;
+    /**
+     * Определяет UUID игрока по нику: кэш -> онлайн-игроки -> база LuckPerms -> кэш профилей сервера.
+     * Запросов к сервисам Mojang не выполняет. Может обращаться к базе LuckPerms, поэтому
+     * не должен вызываться из основного потока.
+     */
+    public UUID resolvePlayerId(String playerName) {
+        UUID cached = nameCache.getId(playerName);
+        if (cached != null) {
+            return cached;
+        }
+
+        Player onlinePlayer = Bukkit.getPlayerExact(playerName);
+        if (onlinePlayer != null) {
+            rememberName(onlinePlayer.getUniqueId(), onlinePlayer.getName());
+            return onlinePlayer.getUniqueId();
+        }
 
-        luckPerms.getUserManager().loadUser(playerId).thenAcceptAsync(user -> {
-            if (user != null) {
-                luckPerms.getUserManager().cleanupUser(user);
+        if (luckPerms != null) {
+            try {
+                UUID playerId = luckPerms.getUserManager().lookupUniqueId(playerName).join();
+                if (playerId != null) {
+                    rememberName(playerId, playerName);
+                    return playerId;
+                }
+            } catch (RuntimeException e) {
+                plugin.getLogger().log(Level.WARNING, "Не удалось найти игрока " + playerName + " в LuckPerms", e);
             }
-        });
+        }
+
+        OfflinePlayer offlinePlayer = Bukkit.getOfflinePlayerIfCached(playerName);
+        if (offlinePlayer != null) {
+            String name = offlinePlayer.getName() != null ? offlinePlayer.getName() : playerName;
+            rememberName(offlinePlayer.getUniqueId(), name);
+            return offlinePlayer.getUniqueId();
+        }
+
+        // На серверах в офлайн-режиме UUID однозначно вычисляется из ника
+        if (!Bukkit.getOnlineMode()) {
+            UUID playerId = UUID.nameUUIDFromBytes(("OfflinePlayer:" + playerName).getBytes(StandardCharsets.UTF_8));
+            rememberName(playerId, playerName);
+            return playerId;
+        }
+        return null;
     }
 
     public String getPlayerName(UUID playerId) {
+        String cached = nameCache.getName(playerId);
+        if (cached != null) return cached;
+
+        String known = nameIndex.getName(playerId);
+        if (known != null) {
+            nameCache.put(playerId, known);
+            return known;
+        }
+
+        String playerName = lookupName(playerId);
+        if (playerName != null) {
+            rememberName(playerId, playerName);
+            return playerName;
+        }
+        return playerId.toString();
+    }
+
+    private String lookupName(UUID playerId) {
         Player onlinePlayer = Bukkit.getPlayer(playerId);
-        if (onlinePlayer != null) return onlinePlayer.getName();
+        if (onlinePlayer != null) {
+            return onlinePlayer.getName();
+        }
 
-        OfflinePlayer offlinePlayer = Bukkit.getOfflinePlayer(playerId);
-        return offlinePlayer.getName() != null ? offlinePlayer.getName() : playerId.toString();
+        if (luckPerms != null) {
+            try {
+                String playerName = luckPerms.getUserManager().lookupUsername(playerId).join();
+                if (playerName != null) {
+                    return playerName;
+                }
+            } catch (RuntimeException e) {
+                plugin.getLogger().log(Level.WARNING, "Не удалось получить ник игрока " + playerId + " из LuckPerms", e);
+            }
+        }
+
+        return Bukkit.getOfflinePlayer(playerId).getName();
     }
 
     public Map<String, Integer> getReadableBonusWarps() {
-        loadData();
         Map<String, Integer> result = new HashMap<>();
-        for (String key : dataConfig.getKeys(false)) {
-            UUID playerId = UUID.fromString(key);
-            int bonus = dataConfig.getInt(key);
-            String playerName = getPlayerName(playerId);
-            result.put(playerName, bonus);
+        for (Map.Entry<UUID, Integer> entry : bonusStore.view().entrySet()) {
+            String playerName = getPlayerName(entry.getKey());
+            result.put(playerName, entry.getValue());
         }
         return result;
     }
+
+    /**
+     * Серверная часть изменений бонусов для {@link BonusCoordinator}.
+     */
+    private final class ServerEnvironment implements BonusCoordinator.Environment {
+
+        @Override
+        public boolean isOnline(UUID playerId) {
+            return Bukkit.getPlayer(playerId) != null;
+        }
+
+        @Override
+        public UUID resolvePlayerId(String playerName) {
+            return WarpBonusManager.this.resolvePlayerId(playerName);
+        }
+
+        @Override
+        public void flush() {
+            flushData();
+        }
+
+        @Override
+        public void onChanged(UUID playerId, BonusStore.Change change, BonusWarpsChangeEvent.Cause cause) {
+            publishChange(playerId);
+            fireChange(playerId, change, cause);
+            updateSuggestion(playerId, change);
+        }
+    }
 }
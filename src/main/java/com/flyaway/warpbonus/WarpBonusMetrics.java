@@ -0,0 +1,178 @@
+package com.flyaway.warpbonus;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Метрики горячих участков: гистограммы задержек по этапам и сводка для лога.
+ * Вместо строки в логе на каждый пересчёт раз в summary-interval выводится одна сводная строка.
+ */
+public class WarpBonusMetrics {
+    private static final String JMX_DOMAIN = "com.flyaway.warpbonus";
+
+    /** Полный пересчёт прав игрока, включая ожидание в очереди планировщика. */
+    private final LatencyHistogram update = new LatencyHistogram("update");
+    /** Загрузка пользователя из базы LuckPerms (только если он не был загружен). */
+    private final LatencyHistogram userLoad = new LatencyHistogram("user-load");
+    /** Сохранение пользователя в LuckPerms. */
+    private final LatencyHistogram userSave = new LatencyHistogram("user-save");
+    /** Загрузка всех бонусов из хранилища. */
+    private final LatencyHistogram storageLoad = new LatencyHistogram("storage-load");
+    /** Сброс накопленных изменений в хранилище. */
+    private final LatencyHistogram storageFlush = new LatencyHistogram("storage-flush");
+    /** Пересчёт прав при входе (AsyncPlayerPreLoginEvent). */
+    private final LatencyHistogram loginRecalculation = new LatencyHistogram("login");
+    /** Пересчёт всех загруженных участников группы. */
+    private final LatencyHistogram groupRecalculation = new LatencyHistogram("group-recalculation");
+    /** Ожидание свободного слота в каждой полосе планировщика пересчётов. */
+    private final Map<RecalculationScheduler.Lane, LatencyHistogram> queueWait = new EnumMap<>(RecalculationScheduler.Lane.class);
+
+    private final LongAdder updateErrors = new LongAdder();
+    private final LongAdder loginTimeouts = new LongAdder();
+    private final LongAdder joinFallbacks = new LongAdder();
+    private final Logger logger;
+    private final List<ObjectName> registered = new ArrayList<>();
+
+    private long summaryUpdates;
+    private long summaryApplied;
+    private long summarySkipped;
+    private long summaryErrors;
+
+    public WarpBonusMetrics(Logger logger) {
+        this.logger = logger;
+        for (RecalculationScheduler.Lane lane : RecalculationScheduler.Lane.values()) {
+            queueWait.put(lane, new LatencyHistogram("wait-" + lane.getId()));
+        }
+    }
+
+    public LatencyHistogram getUpdate() {
+        return update;
+    }
+
+    public LatencyHistogram getUserLoad() {
+        return userLoad;
+    }
+
+    public LatencyHistogram getUserSave() {
+        return userSave;
+    }
+
+    public LatencyHistogram getStorageLoad() {
+        return storageLoad;
+    }
+
+    public LatencyHistogram getStorageFlush() {
+        return storageFlush;
+    }
+
+    public LatencyHistogram getLoginRecalculation() {
+        return loginRecalculation;
+    }
+
+    public LatencyHistogram getGroupRecalculation() {
+        return groupRecalculation;
+    }
+
+    public LatencyHistogram getQueueWait(RecalculationScheduler.Lane lane) {
+        return queueWait.get(lane);
+    }
+
+    public List<LatencyHistogram> getHistograms() {
+        List<LatencyHistogram> histograms = new ArrayList<>(List.of(update, loginRecalculation, userLoad, userSave,
+                storageLoad, storageFlush, groupRecalculation));
+        histograms.addAll(queueWait.values());
+        return histograms;
+    }
+
+    public void recordUpdateError() {
+        updateErrors.increment();
+    }
+
+    public long getUpdateErrors() {
+        return updateErrors.sum();
+    }
+
+    public void recordLoginTimeout() {
+        loginTimeouts.increment();
+    }
+
+    public long getLoginTimeouts() {
+        return loginTimeouts.sum();
+    }
+
+    public void recordJoinFallback() {
+        joinFallbacks.increment();
+    }
+
+    /** Сколько раз при входе лимит оказался неактуальным и пришлось ставить пересчёт в очередь. */
+    public long getJoinFallbacks() {
+        return joinFallbacks.sum();
+    }
+
+    /**
+     * Выводит в лог сводку за период с прошлой сводки, если за это время были пересчёты.
+     */
+    public synchronized void logSummary(long writesApplied, long writesSkipped, long intervalSeconds) {
+        long updates = update.getCount();
+        long errors = updateErrors.sum();
+        if (updates == summaryUpdates && errors == summaryErrors) return;
+
+        logger.info("За " + intervalSeconds + " с: пересчётов прав " + (updates - summaryUpdates)
+                + " (сохранено " + (writesApplied - summaryApplied)
+                + ", без изменений " + (writesSkipped - summarySkipped)
+                + ", ошибок " + (errors - summaryErrors) + "); за всё время "
+                + format(update));
+
+        summaryUpdates = updates;
+        summaryApplied = writesApplied;
+        summarySkipped = writesSkipped;
+        summaryErrors = errors;
+    }
+
+    public static String format(LatencyHistogram histogram) {
+        return String.format(Locale.ROOT, "n=%d, ср. %.1f, p50 %.1f, p95 %.1f, p99 %.1f, макс. %.1f мс",
+                histogram.getCount(), histogram.getMeanMillis(), histogram.getP50Millis(),
+                histogram.getP95Millis(), histogram.getP99Millis(), histogram.getMaxMillis());
+    }
+
+    public void registerMBeans(WarpBonusCountersMBean counters) {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            register(server, new ObjectName(JMX_DOMAIN + ":type=Counters"), counters);
+            for (LatencyHistogram histogram : getHistograms()) {
+                register(server, new ObjectName(JMX_DOMAIN + ":type=Latency,name=" + histogram.getName()), histogram);
+            }
+        } catch (JMException e) {
+            logger.log(Level.WARNING, "Не удалось зарегистрировать JMX метрики", e);
+        }
+    }
+
+    private void register(MBeanServer server, ObjectName name, Object bean) throws JMException {
+        // Остаётся после /reload или горячей перезагрузки плагина
+        if (server.isRegistered(name)) {
+            server.unregisterMBean(name);
+        }
+        server.registerMBean(bean, name);
+        registered.add(name);
+    }
+
+    public void unregisterMBeans() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (ObjectName name : registered) {
+            try {
+                server.unregisterMBean(name);
+            } catch (JMException ignored) {}
+        }
+        registered.clear();
+    }
+}
@@ -1,8 +1,12 @@
 package com.flyaway.warpbonus;
 
 import org.bukkit.Bukkit;
+import org.bukkit.plugin.ServicePriority;
 import org.bukkit.plugin.java.JavaPlugin;
 
+import java.io.IOException;
+import java.util.logging.Level;
+
 public class WarpBonusPlugin extends JavaPlugin {
     private WarpBonusManager bonusManager;
     private GroupChangeListener groupChangeListener;
@@ -18,7 +22,16 @@ public class WarpBonusPlugin extends JavaPlugin {
             return;
         }
 
-        this.bonusManager = new WarpBonusManager(this);
+        saveDefaultConfig();
+
+        try {
+            this.bonusManager = new WarpBonusManager(this);
+        } catch (IOException e) {
+            getLogger().log(Level.SEVERE, "Данные бонусных варпов недоступны! Плагин будет отключен, "
+                    + "чтобы не пересчитать права по пустым или неполным данным.", e);
+            Bukkit.getPluginManager().disablePlugin(this);
+            return;
+        }
 
         getCommand("warpbonus").setExecutor(new WarpBonusCommand(bonusManager));
         getCommand("warpbonus").setTabCompleter(new WarpBonusCommand(bonusManager));
@@ -26,14 +39,21 @@ public class WarpBonusPlugin extends JavaPlugin {
         this.groupChangeListener = new GroupChangeListener(bonusManager);
         Bukkit.getPluginManager().registerEvents(groupChangeListener, this);
 
+        Bukkit.getServicesManager().register(WarpBonusService.class,
+                new WarpBonusServiceImpl(bonusManager, bonusManager.getExecutor()), this, ServicePriority.Normal);
+
         getLogger().info("Плагин WarpBonus успешно запущен!");
     }
 
     @Override
     public void onDisable() {
+        Bukkit.getServicesManager().unregisterAll(this);
         if (groupChangeListener != null) {
             groupChangeListener.disable();
         }
+        if (bonusManager != null) {
+            bonusManager.shutdown();
+        }
         getLogger().info("Плагин WarpBonus отключен!");
     }
 
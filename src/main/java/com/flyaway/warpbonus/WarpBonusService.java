@@ -0,0 +1,61 @@
+package com.flyaway.warpbonus;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * API для других плагинов (магазины, голосования, квесты). Регистрируется в {@link org.bukkit.plugin.ServicesManager}:
+ * <pre>{@code
+ * WarpBonusService service = Bukkit.getServicesManager().load(WarpBonusService.class);
+ * service.addBonusWarps(player.getUniqueId(), 1);
+ * }</pre>
+ * Все методы неблокирующие и безопасны для вызова из любого потока. Изменения сохраняются так же,
+ * как изменения через команды, права игрока пересчитываются автоматически,
+ * а после изменения вызывается {@link BonusWarpsChangeEvent} с причиной {@code API}.
+ */
+public interface WarpBonusService {
+
+    /**
+     * Текущее количество бонусных варпов игрока (без группового лимита).
+     */
+    CompletableFuture<Integer> getBonusWarps(UUID playerId);
+
+    /**
+     * Бонусные варпы нескольких игроков. В результате есть все переданные игроки, в том числе с нулём.
+     */
+    CompletableFuture<Map<UUID, Integer>> getBonusWarps(Collection<UUID> playerIds);
+
+    /**
+     * Прибавляет delta (отрицательное значение забирает бонусы, но не ниже нуля). Результат — новое количество.
+     */
+    CompletableFuture<Integer> addBonusWarps(UUID playerId, int delta);
+
+    /**
+     * Устанавливает точное количество. Результат — прежнее количество.
+     */
+    CompletableFuture<Integer> setBonusWarps(UUID playerId, int amount);
+
+    /**
+     * Выдаёт бонусы на время, по истечении срока они будут вычтены. Результат — новое количество.
+     */
+    CompletableFuture<Integer> addTemporaryBonusWarps(UUID playerId, int amount, Duration duration);
+
+    /**
+     * Прибавляет бонусы сразу многим игрокам (только положительные количества).
+     * Изменения сохраняются одной пачкой. Результат — новые количества по игрокам.
+     */
+    CompletableFuture<Map<UUID, Integer>> addBonusWarps(Map<UUID, Integer> amounts);
+
+    /**
+     * Устанавливает бонусы сразу многим игрокам. Изменения сохраняются одной пачкой. Результат — новые количества.
+     */
+    CompletableFuture<Map<UUID, Integer>> setBonusWarps(Map<UUID, Integer> amounts);
+
+    /**
+     * Немедленно пересчитывает итоговый лимит варпов игрока (групповой лимит + бонусы). Результат — новый лимит.
+     */
+    CompletableFuture<Integer> recalculate(UUID playerId);
+}
@@ -0,0 +1,100 @@
+package com.flyaway.warpbonus;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Реализация {@link WarpBonusService} поверх {@link WarpBonusManager}: те же операции, что выполняют команды,
+ * но без разбора аргументов и поиска игрока по нику.
+ */
+public class WarpBonusServiceImpl implements WarpBonusService {
+    private final WarpBonusManager bonusManager;
+    private final Executor executor;
+
+    public WarpBonusServiceImpl(WarpBonusManager bonusManager, Executor executor) {
+        this.bonusManager = bonusManager;
+        this.executor = executor;
+    }
+
+    @Override
+    public CompletableFuture<Integer> getBonusWarps(UUID playerId) {
+        // Значения хранятся в памяти, поток не нужен
+        return CompletableFuture.completedFuture(bonusManager.getBonusWarps(playerId));
+    }
+
+    @Override
+    public CompletableFuture<Map<UUID, Integer>> getBonusWarps(Collection<UUID> playerIds) {
+        Map<UUID, Integer> result = new HashMap<>(playerIds.size() * 2);
+        for (UUID playerId : playerIds) {
+            result.put(playerId, bonusManager.getBonusWarps(playerId));
+        }
+        return CompletableFuture.completedFuture(result);
+    }
+
+    @Override
+    public CompletableFuture<Integer> addBonusWarps(UUID playerId, int delta) {
+        // В режиме синхронизации изменение сразу пишется в базу, поэтому не в потоке вызывающего
+        return CompletableFuture.supplyAsync(
+                () -> bonusManager.incrementBonusWarps(playerId, delta, BonusWarpsChangeEvent.Cause.API), executor);
+    }
+
+    @Override
+    public CompletableFuture<Integer> setBonusWarps(UUID playerId, int amount) {
+        if (amount < 0) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("Количество не может быть отрицательным: " + amount));
+        }
+        return CompletableFuture.supplyAsync(
+                () -> bonusManager.setBonusWarps(playerId, amount, BonusWarpsChangeEvent.Cause.API), executor);
+    }
+
+    @Override
+    public CompletableFuture<Integer> addTemporaryBonusWarps(UUID playerId, int amount, Duration duration) {
+        if (amount <= 0 || duration.isNegative() || duration.isZero()) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("Количество и срок должны быть положительными"));
+        }
+        return CompletableFuture.supplyAsync(
+                () -> bonusManager.addTemporaryBonusWarps(playerId, amount, duration.toMillis()), executor);
+    }
+
+    @Override
+    public CompletableFuture<Map<UUID, Integer>> addBonusWarps(Map<UUID, Integer> amounts) {
+        return applyBulk(BulkBonusUpdate.Mode.ADD, amounts);
+    }
+
+    @Override
+    public CompletableFuture<Map<UUID, Integer>> setBonusWarps(Map<UUID, Integer> amounts) {
+        return applyBulk(BulkBonusUpdate.Mode.SET, amounts);
+    }
+
+    private CompletableFuture<Map<UUID, Integer>> applyBulk(BulkBonusUpdate.Mode mode, Map<UUID, Integer> amounts) {
+        List<BulkBonusUpdate.Entry> entries = new ArrayList<>(amounts.size());
+        for (Map.Entry<UUID, Integer> entry : amounts.entrySet()) {
+            int amount = entry.getValue();
+            if (mode == BulkBonusUpdate.Mode.ADD ? amount <= 0 : amount < 0) {
+                return CompletableFuture.failedFuture(new IllegalArgumentException(
+                        "Некорректное количество для " + entry.getKey() + ": " + amount));
+            }
+            entries.add(BulkBonusUpdate.Entry.of(entry.getKey(), amount));
+        }
+
+        return bonusManager.applyBulk(mode, entries, BonusWarpsChangeEvent.Cause.API).thenApply(result -> {
+            Map<UUID, Integer> newAmounts = new HashMap<>(amounts.size() * 2);
+            for (BulkBonusUpdate.EntryResult entry : result.entries()) {
+                newAmounts.put(entry.playerId(), entry.newAmount());
+            }
+            return newAmounts;
+        });
+    }
+
+    @Override
+    public CompletableFuture<Integer> recalculate(UUID playerId) {
+        return bonusManager.updatePlayerPermissions(playerId, RecalculationScheduler.Lane.ADMIN);
+    }
+}
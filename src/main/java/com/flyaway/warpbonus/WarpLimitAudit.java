@@ -0,0 +1,209 @@
+package com.flyaway.warpbonus;
+
+import net.luckperms.api.LuckPerms;
+import net.luckperms.api.model.user.User;
+import net.luckperms.api.model.user.UserManager;
+import net.luckperms.api.node.Node;
+import net.luckperms.api.node.matcher.NodeMatcher;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Аудит расхождений: для каждого обладателя бонусов (и, по запросу, каждого пользователя LuckPerms с варп-пермишеном)
+ * проверяется, что выданный axplayerwarps.warps.N равен групповому лимиту + бонусу.
+ * Загруженные пользователи проверяются сразу, офлайн загружаются через массовую полосу планировщика,
+ * то есть с её ограничениями по параллельности и частоте. Расхождения по желанию исправляются
+ * обычным массовым пересчётом. Одновременно выполняется не больше одного аудита.
+ */
+public class WarpLimitAudit {
+    private static final int SAMPLE_SIZE = 10;
+
+    private final LuckPerms luckPerms;
+    private final GroupLimitIndex groupLimitIndex;
+    private final WarpPermissionUpdater permissionUpdater;
+    private final ToIntFunction<UUID> bonusLookup;
+    private final Supplier<Collection<UUID>> bonusHolders;
+    private final Function<Collection<UUID>, CompletableFuture<Integer>> recalculation;
+    private final Logger logger;
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "WarpBonus-Audit");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile int batchSize = 100;
+
+    public WarpLimitAudit(LuckPerms luckPerms, GroupLimitIndex groupLimitIndex, WarpPermissionUpdater permissionUpdater,
+                          ToIntFunction<UUID> bonusLookup, Supplier<Collection<UUID>> bonusHolders,
+                          Function<Collection<UUID>, CompletableFuture<Integer>> recalculation, Logger logger) {
+        this.luckPerms = luckPerms;
+        this.groupLimitIndex = groupLimitIndex;
+        this.permissionUpdater = permissionUpdater;
+        this.bonusLookup = bonusLookup;
+        this.bonusHolders = bonusHolders;
+        this.recalculation = recalculation;
+        this.logger = logger;
+    }
+
+    public void configure(int batchSize) {
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    public boolean isRunning() {
+        return running.get();
+    }
+
+    /**
+     * Запускает аудит в фоне. Возвращает false, если аудит уже выполняется.
+     *
+     * @param fix      исправить найденные расхождения
+     * @param allUsers проверить также всех пользователей LuckPerms с варп-пермишеном, а не только обладателей бонусов
+     */
+    public boolean start(boolean fix, boolean allUsers, Consumer<Report> onComplete) {
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        executor.execute(() -> {
+            try {
+                onComplete.accept(run(fix, allUsers));
+            } catch (RuntimeException e) {
+                logger.log(Level.SEVERE, "Ошибка при аудите лимитов варпов", e);
+            } finally {
+                running.set(false);
+            }
+        });
+        return true;
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private Report run(boolean fix, boolean allUsers) {
+        long start = System.nanoTime();
+
+        Set<UUID> candidates = new LinkedHashSet<>(bonusHolders.get());
+        if (allUsers) {
+            candidates.addAll(luckPerms.getUserManager()
+                    .searchAll(NodeMatcher.keyStartsWith(WarpBonusManager.WARP_PERMISSION_PREFIX)).join().keySet());
+        }
+        logger.info("Аудит лимитов варпов: проверяется " + candidates.size() + " игроков" + (fix ? " с исправлением" : ""));
+
+        Queue<Mismatch> mismatches = new ConcurrentLinkedQueue<>();
+        AtomicInteger errors = new AtomicInteger();
+        List<UUID> ids = new ArrayList<>(candidates);
+        int lastReportedPercent = 0;
+
+        for (int from = 0; from < ids.size(); from += batchSize) {
+            if (Thread.currentThread().isInterrupted()) break;
+
+            List<UUID> batch = ids.subList(from, Math.min(from + batchSize, ids.size()));
+            List<CompletableFuture<Void>> checks = new ArrayList<>(batch.size());
+            for (UUID playerId : batch) {
+                checks.add(check(playerId).handle((mismatch, error) -> {
+                    if (error != null) {
+                        errors.incrementAndGet();
+                        logger.log(Level.FINE, "Не удалось проверить игрока " + playerId, error);
+                    } else if (mismatch != null) {
+                        mismatches.add(mismatch);
+                    }
+                    return null;
+                }));
+            }
+            CompletableFuture.allOf(checks.toArray(new CompletableFuture[0])).join();
+
+            int checked = from + batch.size();
+            int percent = (int) (checked * 100L / ids.size());
+            if (percent / 10 != lastReportedPercent / 10) {
+                lastReportedPercent = percent;
+                logger.info("Аудит лимитов варпов: " + checked + "/" + ids.size() + " (" + percent + "%), расхождений: " + mismatches.size());
+            }
+        }
+
+        int fixed = 0;
+        if (fix && !mismatches.isEmpty()) {
+            List<UUID> toFix = new ArrayList<>(mismatches.size());
+            for (Mismatch mismatch : mismatches) {
+                toFix.add(mismatch.playerId());
+            }
+            fixed = recalculation.apply(toFix).join();
+        }
+
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000L;
+        List<Mismatch> sample = mismatches.stream().limit(SAMPLE_SIZE).toList();
+        Report report = new Report(ids.size(), mismatches.size(), sample, errors.get(), fixed, elapsedMillis);
+        logger.info("Аудит лимитов варпов завершён за " + elapsedMillis + " мс: проверено " + report.checked()
+                + ", расхождений " + report.mismatches() + ", исправлено " + report.fixed() + ", ошибок " + report.errors());
+        return report;
+    }
+
+    private CompletableFuture<Mismatch> check(UUID playerId) {
+        UserManager userManager = luckPerms.getUserManager();
+        User loaded = userManager.getUser(playerId);
+        if (loaded != null) {
+            return CompletableFuture.completedFuture(inspect(loaded));
+        }
+        return permissionUpdater.getScheduler().submit(RecalculationScheduler.Lane.BULK,
+                () -> userManager.loadUser(playerId).thenApply(user -> {
+                    try {
+                        return inspect(user);
+                    } finally {
+                        userManager.cleanupUser(user);
+                    }
+                }));
+    }
+
+    private Mismatch inspect(User user) {
+        if (permissionUpdater.isUpToDate(user)) {
+            return null;
+        }
+        List<String> actual = new ArrayList<>();
+        for (Node node : user.getNodes()) {
+            if (node.getKey().startsWith(WarpBonusManager.WARP_PERMISSION_PREFIX)) {
+                actual.add(node.getKey().substring(WarpBonusManager.WARP_PERMISSION_PREFIX.length())
+                        + (node.getValue() ? "" : "=false") + (node.getContexts().isEmpty() ? "" : " " + node.getContexts())
+                        + (node.hasExpiry() ? " (временный)" : ""));
+            }
+        }
+        int expected = groupLimitIndex.getUserLimit(user) + bonusLookup.applyAsInt(user.getUniqueId());
+        String name = user.getUsername() != null ? user.getUsername() : user.getUniqueId().toString();
+        return new Mismatch(user.getUniqueId(), name, expected, actual);
+    }
+
+    /**
+     * @param actual выданные варп-пермишены (значения N), пусто — пермишен не выдан
+     */
+    public record Mismatch(UUID playerId, String playerName, int expected, List<String> actual) {
+    }
+
+    /**
+     * @param sample первые найденные расхождения для вывода в чат
+     */
+    public record Report(int checked, int mismatches, List<Mismatch> sample, int errors, int fixed, long elapsedMillis) {
+    }
+}
@@ -0,0 +1,159 @@
+package com.flyaway.warpbonus;
+
+import net.luckperms.api.LuckPerms;
+import net.luckperms.api.model.user.User;
+import net.luckperms.api.model.user.UserManager;
+import net.luckperms.api.node.Node;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToIntFunction;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Пересчёт итогового пермишена axplayerwarps.warps.N для игрока.
+ * Вся цепочка (загрузка пользователя -> расчёт -> изменение -> сохранение) асинхронна
+ * и не занимает потоки на ожидание базы LuckPerms; порядок и количество одновременных пересчётов
+ * определяет {@link RecalculationScheduler}.
+ */
+public class WarpPermissionUpdater {
+    private final LuckPerms luckPerms;
+    private final GroupLimitIndex groupLimitIndex;
+    private final ToIntFunction<UUID> bonusLookup;
+    private final RecalculationScheduler scheduler;
+    private final WarpBonusMetrics metrics;
+    private final Logger logger;
+
+    private final AtomicLong writesSkipped = new AtomicLong();
+    private final AtomicLong writesApplied = new AtomicLong();
+
+    public WarpPermissionUpdater(LuckPerms luckPerms, GroupLimitIndex groupLimitIndex, ToIntFunction<UUID> bonusLookup,
+                                 RecalculationScheduler scheduler, WarpBonusMetrics metrics, Logger logger) {
+        this.luckPerms = luckPerms;
+        this.groupLimitIndex = groupLimitIndex;
+        this.bonusLookup = bonusLookup;
+        this.scheduler = scheduler;
+        this.metrics = metrics;
+        this.logger = logger;
+    }
+
+    /**
+     * Пересчитывает права игрока в указанной полосе планировщика. Результат — новый итоговый лимит варпов.
+     */
+    public CompletableFuture<Integer> update(UUID playerId, RecalculationScheduler.Lane lane) {
+        long start = System.nanoTime();
+        return scheduler.submit(lane, () -> {
+                    User loaded = luckPerms.getUserManager().getUser(playerId);
+                    return loaded != null ? apply(loaded, false) : loadUser(playerId).thenCompose(user -> apply(user, true));
+                })
+                .whenComplete((total, error) -> {
+                    metrics.getUpdate().recordSince(start);
+                    if (error != null) {
+                        metrics.recordUpdateError();
+                        logger.log(Level.SEVERE, "Ошибка при обновлении прав игрока " + playerId, error);
+                    }
+                });
+    }
+
+    private CompletableFuture<User> loadUser(UUID playerId) {
+        long start = System.nanoTime();
+        return luckPerms.getUserManager().loadUser(playerId).whenComplete((loaded, error) -> metrics.getUserLoad().recordSince(start));
+    }
+
+    /**
+     * То же для игрока по UUID; незагруженный пользователь считается неактуальным.
+     */
+    public boolean isUpToDate(UUID playerId) {
+        User user = luckPerms.getUserManager().getUser(playerId);
+        return user != null && isUpToDate(user);
+    }
+
+    /**
+     * Совпадает ли выданный пермишен с текущим лимитом. Только чтение уже загруженного пользователя,
+     * поэтому можно вызывать из основного потока.
+     */
+    public boolean isUpToDate(User user) {
+        return hasExactWarpPermission(user, groupLimitIndex.getUserLimit(user) + bonusLookup.applyAsInt(user.getUniqueId()));
+    }
+
+    /**
+     * @param loadedHere пользователь загружен для пересчёта и выгружается после него;
+     *                   уже загруженных (онлайн или входящих на сервер) не выгружаем
+     */
+    private CompletableFuture<Integer> apply(User user, boolean loadedHere) {
+        UserManager userManager = luckPerms.getUserManager();
+        int groupLimit = groupLimitIndex.getUserLimit(user);
+        int bonus = bonusLookup.applyAsInt(user.getUniqueId());
+        int totalWarps = groupLimit + bonus;
+
+        if (hasExactWarpPermission(user, totalWarps)) {
+            writesSkipped.incrementAndGet();
+            if (loadedHere) {
+                userManager.cleanupUser(user);
+            }
+            return CompletableFuture.completedFuture(totalWarps);
+        }
+
+        removeOldWarpPermissions(user);
+        user.data().add(Node.builder(WarpBonusManager.WARP_PERMISSION_PREFIX + totalWarps).value(true).build());
+
+        long saveStart = System.nanoTime();
+        return userManager.saveUser(user).thenApply(ignored -> {
+            metrics.getUserSave().recordSince(saveStart);
+            writesApplied.incrementAndGet();
+            // Отдельные пересчёты видны только в отладочном логе, в INFO пишется периодическая сводка
+            logger.fine("Обновлены права для " + (user.getUsername() != null ? user.getUsername() : user.getUniqueId()) +
+                    " (группа: " + groupLimit + ", бонусы: " + bonus + ", итого: " + totalWarps + ")");
+            if (loadedHere) {
+                userManager.cleanupUser(user);
+            }
+            return totalWarps;
+        });
+    }
+
+    /**
+     * Проверяет, что у пользователя уже выдан ровно один варп-пермишен с нужным значением.
+     */
+    private static boolean hasExactWarpPermission(User user, int totalWarps) {
+        Node current = null;
+        for (Node node : user.getNodes()) {
+            if (node.getKey().startsWith(WarpBonusManager.WARP_PERMISSION_PREFIX)) {
+                if (current != null) return false;
+                current = node;
+            }
+        }
+        return current != null
+                && current.getValue()
+                && !current.hasExpiry()
+                && current.getContexts().isEmpty()
+                && current.getKey().equals(WarpBonusManager.WARP_PERMISSION_PREFIX + totalWarps);
+    }
+
+    private static void removeOldWarpPermissions(User user) {
+        Set<Node> toRemove = new HashSet<>();
+        for (Node node : user.getNodes()) {
+            if (node.getKey().startsWith(WarpBonusManager.WARP_PERMISSION_PREFIX)) {
+                toRemove.add(node);
+            }
+        }
+        for (Node node : toRemove) {
+            user.data().remove(node);
+        }
+    }
+
+    public RecalculationScheduler getScheduler() {
+        return scheduler;
+    }
+
+    public long getWritesSkipped() {
+        return writesSkipped.get();
+    }
+
+    public long getWritesApplied() {
+        return writesApplied.get();
+    }
+}
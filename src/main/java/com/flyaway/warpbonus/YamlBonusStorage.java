@@ -0,0 +1,153 @@
+package com.flyaway.warpbonus;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ObjIntConsumer;
+import java.util.logging.Logger;
+
+/**
+ * Хранилище в файле bonus_warps.yml (строки вида {@code <UUID>: <количество>}).
+ * Файл всегда переписывается целиком через временный файл и атомарное переименование.
+ */
+public class YamlBonusStorage implements BonusStorage {
+    private final File file;
+    private final Logger logger;
+    private final Map<UUID, Integer> persisted = new ConcurrentHashMap<>();
+
+    private volatile long knownModified;
+    private volatile long knownSize;
+
+    public YamlBonusStorage(File file, Logger logger) {
+        this.file = file;
+        this.logger = logger;
+    }
+
+    @Override
+    public String getName() {
+        return "yaml";
+    }
+
+    @Override
+    public synchronized Map<UUID, Integer> loadAll() throws IOException {
+        persisted.clear();
+        if (!file.exists()) {
+            writeFile();
+            return new HashMap<>();
+        }
+
+        int skipped = 0;
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#") || line.equals("{}")) continue;
+
+                int separator = line.lastIndexOf(':');
+                if (separator <= 0) {
+                    skipped++;
+                    continue;
+                }
+                try {
+                    UUID playerId = UUID.fromString(unquote(line.substring(0, separator).trim()));
+                    int amount = Integer.parseInt(line.substring(separator + 1).trim());
+                    if (amount > 0) {
+                        persisted.put(playerId, amount);
+                    }
+                } catch (IllegalArgumentException e) {
+                    skipped++;
+                }
+            }
+        }
+
+        if (skipped > 0) {
+            logger.warning("Пропущено некорректных строк в " + file.getName() + ": " + skipped);
+        }
+        rememberFileState();
+        return new HashMap<>(persisted);
+    }
+
+    @Override
+    public int get(UUID playerId) {
+        return persisted.getOrDefault(playerId, 0);
+    }
+
+    @Override
+    public synchronized void set(UUID playerId, int amount) throws IOException {
+        apply(playerId, amount);
+        writeFile();
+    }
+
+    @Override
+    public synchronized int increment(UUID playerId, int delta) throws IOException {
+        int amount = Math.max(0, get(playerId) + delta);
+        set(playerId, amount);
+        return amount;
+    }
+
+    @Override
+    public void list(ObjIntConsumer<UUID> consumer) {
+        persisted.forEach(consumer::accept);
+    }
+
+    @Override
+    public synchronized void saveBatch(Map<UUID, Integer> changes) throws IOException {
+        changes.forEach(this::apply);
+        writeFile();
+    }
+
+    @Override
+    public boolean hasExternalChanges() {
+        return file.lastModified() != knownModified || file.length() != knownSize;
+    }
+
+    private void apply(UUID playerId, int amount) {
+        if (amount > 0) {
+            persisted.put(playerId, amount);
+        } else {
+            persisted.remove(playerId);
+        }
+    }
+
+    private void writeFile() throws IOException {
+        Path target = file.toPath();
+        Path temp = target.resolveSibling(file.getName() + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            for (Map.Entry<UUID, Integer> entry : persisted.entrySet()) {
+                writer.write(entry.getKey().toString());
+                writer.write(": ");
+                writer.write(Integer.toString(entry.getValue()));
+                writer.newLine();
+            }
+        }
+        try {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        rememberFileState();
+    }
+
+    private void rememberFileState() {
+        knownModified = file.lastModified();
+        knownSize = file.length();
+    }
+
+    private static String unquote(String value) {
+        if (value.length() >= 2 && (value.startsWith("'") && value.endsWith("'")
+                || value.startsWith("\"") && value.endsWith("\""))) {
+            return value.substring(1, value.length() - 1);
+        }
+        return value;
+    }
+}
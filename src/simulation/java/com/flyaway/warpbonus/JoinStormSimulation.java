@@ -0,0 +1,317 @@
+package com.flyaway.warpbonus;
+
+import net.luckperms.api.model.group.Group;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Нагрузочная симуляция без сервера: волна входов после перезапуска, изменение лимита группы
+ * и массовая выдача бонусов. Сценарии выполняет тот же {@link BonusCoordinator}, что и плагин, с настоящими
+ * очередью пересчёта, ограничителем, индексом лимитов и {@link WarpPermissionUpdater}; LuckPerms и планировщик
+ * Bukkit подменены.
+ * <p>
+ * Для каждого события измеряется время до момента, когда в базе LuckPerms сохранён правильный лимит.
+ * Параметры передаются аргументами вида {@code ключ=значение} (см. {@link #DEFAULTS}).
+ */
+public final class JoinStormSimulation {
+    private static final Map<String, String> DEFAULTS = Map.ofEntries(
+            Map.entry("players", "300"),           // игроков во волне входов
+            Map.entry("join-window", "5"),         // за сколько секунд они заходят
+            Map.entry("offline-players", "5000"),  // всего зарегистрированных игроков
+            Map.entry("bonus-share", "0.3"),       // доля игроков с бонусами
+            Map.entry("bulk", "1000"),             // игроков в массовой выдаче
+            Map.entry("load-latency", "20"),       // мс на загрузку пользователя LuckPerms
+            Map.entry("save-latency", "30"),       // мс на сохранение пользователя
+            Map.entry("jitter", "10"),             // случайная добавка к задержке, мс
+            Map.entry("storage-connections", "10"),
+            Map.entry("max-concurrent", "16"),     // recalculation.max-concurrent
+            Map.entry("debounce-ticks", "20"),     // recalculation.debounce-ticks
+            Map.entry("batch-size", "100"),        // bulk.batch-size
+            Map.entry("bulk-max-concurrent", "8"), // bulk.max-concurrent
+            Map.entry("bulk-rate", "100"),         // bulk.rate-per-second
+            Map.entry("login-timeout", "2000"),    // recalculation.login-timeout-ms
+            Map.entry("timeout", "120"),           // сколько секунд ждать завершения сценария
+            Map.entry("seed", "42"));
+
+    private final Map<String, String> settings;
+    private final Random random;
+    private final Logger logger = Logger.getLogger("WarpBonusSimulation");
+    private final SimulatedLuckPerms luckPerms;
+    private final SimulatedScheduler scheduler = new SimulatedScheduler(4);
+    private final ExecutorService bulkExecutor = Executors.newFixedThreadPool(2);
+    private final ExecutorService recalculationExecutor = Executors.newSingleThreadExecutor();
+    private final ExecutorService loginExecutor = Executors.newCachedThreadPool();
+    private final BonusStore bonusStore;
+    private final GroupLimitIndex groupLimitIndex;
+    private final WarpBonusMetrics metrics;
+    private final WarpPermissionUpdater updater;
+    private final BonusCoordinator coordinator;
+    private final List<UUID> players = new ArrayList<>();
+    private final Map<UUID, Long> triggeredAt = new ConcurrentHashMap<>();
+
+    private LatencyHistogram timeToCorrect;
+
+    private JoinStormSimulation(Map<String, String> settings) throws IOException {
+        this.settings = settings;
+        this.random = new Random(getLong("seed"));
+        logger.setLevel(Level.WARNING);
+
+        this.luckPerms = new SimulatedLuckPerms((int) getLong("storage-connections"),
+                getLong("load-latency"), getLong("save-latency"), getLong("jitter"));
+        LuckPermsFakes.installProvider();
+        luckPerms.setGroupLimit("default", 3);
+        luckPerms.setGroupLimit("vip", 10);
+
+        Map<UUID, Integer> bonuses = new HashMap<>();
+        for (int i = 0; i < getLong("offline-players"); i++) {
+            UUID playerId = new UUID(random.nextLong(), random.nextLong());
+            players.add(playerId);
+            luckPerms.createUser(playerId, random.nextInt(10) == 0 ? "vip" : "default");
+            if (random.nextDouble() < Double.parseDouble(settings.get("bonus-share"))) {
+                bonuses.put(playerId, 1 + random.nextInt(5));
+            }
+        }
+
+        this.bonusStore = new BonusStore(new MemoryBonusStorage(bonuses), logger);
+        bonusStore.load();
+        this.groupLimitIndex = new GroupLimitIndex(luckPerms.api().getGroupManager());
+        groupLimitIndex.rebuild();
+        this.metrics = new WarpBonusMetrics(logger);
+        this.updater = new WarpPermissionUpdater(luckPerms.api(), groupLimitIndex, bonusStore::get,
+                new RecalculationScheduler((int) getLong("max-concurrent"), recalculationExecutor, metrics), metrics, logger) {
+            @Override
+            public CompletableFuture<Integer> update(UUID playerId, RecalculationScheduler.Lane lane) {
+                return super.update(playerId, lane).whenComplete((total, error) -> recordIfCorrect(playerId, error));
+            }
+        };
+        updater.getScheduler().configureBulk((int) getLong("bulk-max-concurrent"), getLong("bulk-rate"));
+        this.coordinator = new BonusCoordinator(bonusStore, updater, bulkExecutor, new SimulatedEnvironment(), metrics, logger,
+                recalculation -> new RecalculationQueue(null, scheduler.asBukkitScheduler(), getLong("debounce-ticks"), recalculation));
+        coordinator.configure(getLong("login-timeout"), (int) getLong("batch-size"));
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> settings = new HashMap<>(DEFAULTS);
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (separator <= 0 || !DEFAULTS.containsKey(arg.substring(0, separator))) {
+                System.err.println("Неизвестный параметр: " + arg + ", доступны: " + DEFAULTS.keySet());
+                System.exit(1);
+            }
+            settings.put(arg.substring(0, separator), arg.substring(separator + 1));
+        }
+
+        JoinStormSimulation simulation = new JoinStormSimulation(settings);
+        try {
+            System.out.println("Параметры: " + settings);
+            simulation.runJoinStorm();
+            simulation.runGroupEdit();
+            simulation.runBulkGrant();
+            simulation.printQueueWaits();
+        } finally {
+            simulation.shutdown();
+        }
+    }
+
+    /**
+     * Сотни игроков заходят за несколько секунд. Как на сервере: в потоке AsyncPlayerPreLoginEvent LuckPerms
+     * загружает пользователя, затем {@link BonusCoordinator#recalculateOnLogin} пересчитывает лимит с таймаутом;
+     * при входе {@link BonusCoordinator#verifyOnJoin} проверяет лимит и, если он не актуален, ставит пересчёт в очередь.
+     */
+    private void runJoinStorm() throws InterruptedException {
+        long timeoutsBefore = metrics.getLoginTimeouts();
+        long fallbacksBefore = metrics.getJoinFallbacks();
+        int count = (int) Math.min(getLong("players"), players.size());
+        List<UUID> joining = new ArrayList<>(players.subList(0, count));
+        long windowMillis = TimeUnit.SECONDS.toMillis(getLong("join-window"));
+
+        runScenario("Волна входов (" + count + " игроков за " + getLong("join-window") + " с)", () -> {
+            long start = System.nanoTime();
+            for (int i = 0; i < joining.size(); i++) {
+                long due = start + TimeUnit.MILLISECONDS.toNanos(windowMillis * i / joining.size());
+                long wait = due - System.nanoTime();
+                if (wait > 0) {
+                    TimeUnit.NANOSECONDS.sleep(wait);
+                }
+                UUID playerId = joining.get(i);
+                triggeredAt.putIfAbsent(playerId, System.nanoTime());
+                loginExecutor.execute(() -> login(playerId));
+            }
+        });
+        System.out.println("Не успели при подключении: " + (metrics.getLoginTimeouts() - timeoutsBefore)
+                + ", досчитано после входа: " + (metrics.getJoinFallbacks() - fallbacksBefore));
+    }
+
+    private void login(UUID playerId) {
+        luckPerms.login(playerId).join();
+        coordinator.recalculateOnLogin(playerId);
+        coordinator.verifyOnJoin(playerId);
+    }
+
+    /**
+     * Меняется лимит группы default: все её участники, которые сейчас онлайн, пересчитываются
+     * пачками через {@link BonusCoordinator#recalculateUsers}, как при правке группы на сервере.
+     */
+    private void runGroupEdit() throws InterruptedException {
+        runScenario("Изменение лимита группы default (3 -> 5)", () -> {
+            Group group = luckPerms.setGroupLimit("default", 5);
+            groupLimitIndex.update(group);
+
+            List<UUID> members = new ArrayList<>();
+            for (UUID playerId : luckPerms.getOnline()) {
+                if (luckPerms.getPrimaryGroup(playerId).equals("default")) {
+                    members.add(playerId);
+                    triggeredAt.putIfAbsent(playerId, System.nanoTime());
+                }
+            }
+
+            coordinator.recalculateUsers(members, "группа default");
+        });
+    }
+
+    /**
+     * Массовая выдача +1 бонусного варпа случайным игрокам (онлайн и офлайн) через
+     * {@link BonusCoordinator#applyBulk}, как {@code /warpbonus bulk add}.
+     */
+    private void runBulkGrant() throws InterruptedException {
+        List<UUID> shuffled = new ArrayList<>(players);
+        Collections.shuffle(shuffled, random);
+        List<UUID> targets = shuffled.subList(0, (int) Math.min(getLong("bulk"), shuffled.size()));
+
+        runScenario("Массовая выдача (" + targets.size() + " игроков)", () -> {
+            List<BulkBonusUpdate.Entry> entries = new ArrayList<>(targets.size());
+            for (UUID playerId : targets) {
+                entries.add(BulkBonusUpdate.Entry.of(playerId, 1));
+                triggeredAt.putIfAbsent(playerId, System.nanoTime());
+            }
+            coordinator.applyBulk(BulkBonusUpdate.Mode.ADD, entries, BonusWarpsChangeEvent.Cause.BULK).join();
+        });
+    }
+
+    private void printQueueWaits() {
+        System.out.println();
+        System.out.println("== Ожидание слота по полосам (за все сценарии) ==");
+        for (RecalculationScheduler.Lane lane : RecalculationScheduler.Lane.values()) {
+            System.out.println(lane.getId() + ": " + WarpBonusMetrics.format(metrics.getQueueWait(lane)));
+        }
+    }
+
+    private void runScenario(String name, ScenarioAction action) throws InterruptedException {
+        timeToCorrect = new LatencyHistogram("time-to-correct");
+        long loadsBefore = luckPerms.getLoadCalls();
+        long savesBefore = luckPerms.getSaveCalls();
+        long updatesBefore = metrics.getUpdate().getCount();
+        long start = System.nanoTime();
+
+        action.run();
+
+        long deadline = start + TimeUnit.SECONDS.toNanos(getLong("timeout"));
+        while (!isIdle() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        long updates = metrics.getUpdate().getCount() - updatesBefore;
+
+        System.out.println();
+        System.out.println("== " + name + " ==");
+        System.out.println("Время: " + elapsedMillis + " мс" + (isIdle() ? "" : " (превышен таймаут!)"));
+        System.out.println(String.format(Locale.ROOT, "Пересчётов: %d (%.1f в секунду)", updates,
+                updates * 1000d / Math.max(1, elapsedMillis)));
+        System.out.println("Время до правильного лимита: " + WarpBonusMetrics.format(timeToCorrect));
+        System.out.println("Вызовов loadUser: " + (luckPerms.getLoadCalls() - loadsBefore)
+                + ", saveUser: " + (luckPerms.getSaveCalls() - savesBefore));
+        System.out.println("Не дождались правильного лимита: " + triggeredAt.size()
+                + ", игроков с неправильным лимитом онлайн: " + countIncorrectOnline());
+        triggeredAt.clear();
+    }
+
+    private boolean isIdle() {
+        RecalculationScheduler scheduler = updater.getScheduler();
+        return triggeredAt.isEmpty() && coordinator.getRecalculationQueue().getPendingCount() == 0
+                && scheduler.getInFlight() == 0 && scheduler.getWaiting() == 0;
+    }
+
+    /**
+     * Вызывается после каждого пересчёта: если в базе уже правильный лимит, событие игрока считается обработанным.
+     */
+    private void recordIfCorrect(UUID playerId, Throwable error) {
+        Long triggered = triggeredAt.get(playerId);
+        if (triggered != null && error == null && luckPerms.getStoredWarpLimit(playerId) == expectedLimit(playerId)) {
+            if (triggeredAt.remove(playerId, triggered)) {
+                timeToCorrect.recordSince(triggered);
+            }
+        }
+    }
+
+    private int expectedLimit(UUID playerId) {
+        return groupLimitIndex.getLimit(luckPerms.getPrimaryGroup(playerId)) + bonusStore.get(playerId);
+    }
+
+    private int countIncorrectOnline() {
+        int incorrect = 0;
+        for (UUID playerId : luckPerms.getOnline()) {
+            if (luckPerms.getStoredWarpLimit(playerId) != expectedLimit(playerId)) {
+                incorrect++;
+            }
+        }
+        return incorrect;
+    }
+
+    private long getLong(String key) {
+        return Long.parseLong(settings.get(key));
+    }
+
+    private void shutdown() {
+        scheduler.shutdown();
+        bulkExecutor.shutdownNow();
+        recalculationExecutor.shutdownNow();
+        loginExecutor.shutdownNow();
+        luckPerms.shutdown();
+    }
+
+    /**
+     * Окружение без сервера: онлайн — вошедшие в подменённый LuckPerms, ники не используются,
+     * оповещать некого.
+     */
+    private final class SimulatedEnvironment implements BonusCoordinator.Environment {
+
+        @Override
+        public boolean isOnline(UUID playerId) {
+            return luckPerms.isOnline(playerId);
+        }
+
+        @Override
+        public UUID resolvePlayerId(String playerName) {
+            return null;
+        }
+
+        @Override
+        public void flush() {
+            bonusStore.flush();
+        }
+
+        @Override
+        public void onChanged(UUID playerId, BonusStore.Change change, BonusWarpsChangeEvent.Cause cause) {
+        }
+    }
+
+    @FunctionalInterface
+    private interface ScenarioAction {
+        void run() throws InterruptedException;
+    }
+}
@@ -0,0 +1,189 @@
+package com.flyaway.warpbonus;
+
+import net.luckperms.api.LuckPerms;
+import net.luckperms.api.model.data.DataMutateResult;
+import net.luckperms.api.model.data.NodeMap;
+import net.luckperms.api.model.group.Group;
+import net.luckperms.api.model.group.GroupManager;
+import net.luckperms.api.model.user.User;
+import net.luckperms.api.model.user.UserManager;
+import net.luckperms.api.node.Node;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * LuckPerms в памяти с имитацией базы: загрузка и сохранение пользователя занимают поток из пула
+ * соединений на заданное время (как блокирующий запрос к SQL базе LuckPerms).
+ */
+final class SimulatedLuckPerms {
+    private final ExecutorService storagePool;
+    private final long loadLatencyMillis;
+    private final long saveLatencyMillis;
+    private final long jitterMillis;
+
+    private final Map<UUID, StoredUser> storage = new ConcurrentHashMap<>();
+    private final Map<UUID, User> loaded = new ConcurrentHashMap<>();
+    private final Set<UUID> online = ConcurrentHashMap.newKeySet();
+    private final Map<String, Group> groups = new ConcurrentHashMap<>();
+    private final AtomicLong loadCalls = new AtomicLong();
+    private final AtomicLong saveCalls = new AtomicLong();
+    private final LuckPerms luckPerms;
+
+    SimulatedLuckPerms(int storageConnections, long loadLatencyMillis, long saveLatencyMillis, long jitterMillis) {
+        AtomicInteger threadId = new AtomicInteger();
+        this.storagePool = Executors.newFixedThreadPool(storageConnections, r -> {
+            Thread thread = new Thread(r, "Simulated-Storage-" + threadId.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.loadLatencyMillis = loadLatencyMillis;
+        this.saveLatencyMillis = saveLatencyMillis;
+        this.jitterMillis = jitterMillis;
+
+        UserManager userManager = LuckPermsFakes.proxy(UserManager.class, Map.of(
+                "getUser", args -> args[0] instanceof UUID playerId ? loaded.get(playerId) : null,
+                "loadUser", args -> loadUser((UUID) args[0]),
+                "saveUser", args -> saveUser((User) args[0]),
+                "cleanupUser", args -> {
+                    User user = (User) args[0];
+                    if (!online.contains(user.getUniqueId())) {
+                        loaded.remove(user.getUniqueId(), user);
+                    }
+                    return null;
+                },
+                "isLoaded", args -> loaded.containsKey((UUID) args[0])));
+        GroupManager groupManager = LuckPermsFakes.proxy(GroupManager.class, Map.of(
+                "getGroup", args -> groups.get((String) args[0]),
+                "getLoadedGroups", args -> Set.copyOf(groups.values()),
+                "isLoaded", args -> groups.containsKey((String) args[0])));
+        this.luckPerms = LuckPermsFakes.proxy(LuckPerms.class, Map.of(
+                "getUserManager", args -> userManager,
+                "getGroupManager", args -> groupManager));
+    }
+
+    LuckPerms api() {
+        return luckPerms;
+    }
+
+    /** Задаёт группе собственный лимит axplayerwarps.warps.N среди прочих прав. */
+    Group setGroupLimit(String groupName, int limit) {
+        List<Node> nodes = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            nodes.add(LuckPermsFakes.node("some.plugin.permission." + i, true));
+        }
+        nodes.add(LuckPermsFakes.node(WarpBonusManager.WARP_PERMISSION_PREFIX + limit, true));
+        Group group = LuckPermsFakes.group(groupName, List.copyOf(nodes));
+        groups.put(groupName, group);
+        return group;
+    }
+
+    void createUser(UUID playerId, String groupName) {
+        storage.put(playerId, new StoredUser(groupName, List.of()));
+    }
+
+    String getPrimaryGroup(UUID playerId) {
+        return storage.get(playerId).primaryGroup();
+    }
+
+    /**
+     * Вход игрока: LuckPerms сам загружает пользователя до события входа.
+     */
+    CompletableFuture<Void> login(UUID playerId) {
+        online.add(playerId);
+        return loadUser(playerId).thenApply(user -> null);
+    }
+
+    boolean isOnline(UUID playerId) {
+        return online.contains(playerId);
+    }
+
+    Set<UUID> getOnline() {
+        return online;
+    }
+
+    /** Лимит варпов, сохранённый в базе (-1, если пермишена нет). */
+    int getStoredWarpLimit(UUID playerId) {
+        int limit = -1;
+        for (Node node : storage.get(playerId).nodes()) {
+            if (node.getKey().startsWith(WarpBonusManager.WARP_PERMISSION_PREFIX) && node.getValue()) {
+                limit = Math.max(limit, Integer.parseInt(node.getKey().substring(WarpBonusManager.WARP_PERMISSION_PREFIX.length())));
+            }
+        }
+        return limit;
+    }
+
+    long getLoadCalls() {
+        return loadCalls.get();
+    }
+
+    long getSaveCalls() {
+        return saveCalls.get();
+    }
+
+    void shutdown() {
+        storagePool.shutdownNow();
+    }
+
+    private CompletableFuture<User> loadUser(UUID playerId) {
+        User existing = loaded.get(playerId);
+        if (existing != null) {
+            return CompletableFuture.completedFuture(existing);
+        }
+        loadCalls.incrementAndGet();
+        return query(loadLatencyMillis, () -> loaded.computeIfAbsent(playerId, id -> {
+            StoredUser stored = storage.get(id);
+            return user(id, stored.primaryGroup(), stored.nodes());
+        }));
+    }
+
+    private CompletableFuture<Void> saveUser(User user) {
+        saveCalls.incrementAndGet();
+        List<Node> nodes = List.copyOf(user.getNodes());
+        return query(saveLatencyMillis, () -> {
+            storage.compute(user.getUniqueId(), (id, stored) -> new StoredUser(stored.primaryGroup(), nodes));
+            return null;
+        });
+    }
+
+    private <T> CompletableFuture<T> query(long latencyMillis, Supplier<T> operation) {
+        return CompletableFuture.supplyAsync(() -> {
+            long jitter = jitterMillis > 0 ? ThreadLocalRandom.current().nextLong(jitterMillis + 1) : 0;
+            try {
+                Thread.sleep(latencyMillis + jitter);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return operation.get();
+        }, storagePool);
+    }
+
+    private User user(UUID playerId, String primaryGroup, List<Node> storedNodes) {
+        Set<Node> nodes = ConcurrentHashMap.newKeySet();
+        nodes.addAll(storedNodes);
+        NodeMap data = LuckPermsFakes.proxy(NodeMap.class, Map.of(
+                "add", args -> nodes.add((Node) args[0]) ? DataMutateResult.SUCCESS : DataMutateResult.FAIL_ALREADY_HAS,
+                "remove", args -> nodes.remove((Node) args[0]) ? DataMutateResult.SUCCESS : DataMutateResult.FAIL_LACKS));
+        return LuckPermsFakes.proxy(User.class, Map.of(
+                "getUniqueId", args -> playerId,
+                "getUsername", args -> "Player" + (playerId.getLeastSignificantBits() & 0xffff),
+                "getPrimaryGroup", args -> primaryGroup,
+                "getInheritedGroups", args -> List.of(groups.get(primaryGroup)),
+                "getNodes", args -> Set.copyOf(nodes),
+                "data", args -> data));
+    }
+
+    private record StoredUser(String primaryGroup, List<Node> nodes) {
+    }
+}
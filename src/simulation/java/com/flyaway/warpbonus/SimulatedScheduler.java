@@ -0,0 +1,52 @@
+package com.flyaway.warpbonus;
+
+import org.bukkit.scheduler.BukkitScheduler;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Планировщик Bukkit без сервера: асинхронные задачи выполняются на пуле потоков,
+ * один тик равен 50 мс реального времени.
+ */
+final class SimulatedScheduler {
+    private static final long TICK_MILLIS = 50;
+
+    private final ScheduledExecutorService executor;
+    private final AtomicInteger taskIds = new AtomicInteger();
+    private final BukkitScheduler bukkitScheduler;
+
+    SimulatedScheduler(int threads) {
+        AtomicInteger threadId = new AtomicInteger();
+        this.executor = Executors.newScheduledThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "Simulated-Async-" + threadId.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.bukkitScheduler = LuckPermsFakes.proxy(BukkitScheduler.class, Map.of(
+                "runTaskAsynchronously", args -> task(executor.submit((Runnable) args[1])),
+                "runTaskLaterAsynchronously", args -> task(executor.schedule((Runnable) args[1],
+                        (Long) args[2] * TICK_MILLIS, TimeUnit.MILLISECONDS))));
+    }
+
+    BukkitScheduler asBukkitScheduler() {
+        return bukkitScheduler;
+    }
+
+    private BukkitTask task(Future<?> future) {
+        int taskId = taskIds.incrementAndGet();
+        return LuckPermsFakes.proxy(BukkitTask.class, Map.of(
+                "cancel", args -> future.cancel(false),
+                "isCancelled", args -> future.isCancelled(),
+                "getTaskId", args -> taskId));
+    }
+
+    void shutdown() {
+        executor.shutdownNow();
+    }
+}
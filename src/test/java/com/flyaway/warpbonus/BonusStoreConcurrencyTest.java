@@ -0,0 +1,237 @@
+package com.flyaway.warpbonus;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Много потоков одновременно меняют бонусы небольшого числа игроков: ни одно обновление не должно потеряться
+ * ни в обычном режиме (отложенная запись), ни в режиме сквозной записи в общее хранилище.
+ */
+class BonusStoreConcurrencyTest {
+    private static final int THREADS = 16;
+    private static final int OPERATIONS = 20_000;
+    private static final int PLAYERS = 8;
+
+    private final UUID[] players = new UUID[PLAYERS];
+
+    BonusStoreConcurrencyTest() {
+        for (int i = 0; i < PLAYERS; i++) {
+            players[i] = UUID.randomUUID();
+        }
+    }
+
+    @ParameterizedTest(name = "writeThrough={0}")
+    @ValueSource(booleans = {false, true})
+    void parallelIncrementsAreNotLost(boolean writeThrough) throws Exception {
+        MemoryBonusStorage storage = new MemoryBonusStorage(Map.of());
+        BonusStore store = newStore(storage, writeThrough);
+        long[] expected = new long[PLAYERS];
+
+        List<long[]> perThread = hammer(random -> {
+            long[] added = new long[PLAYERS];
+            for (int i = 0; i < OPERATIONS; i++) {
+                int player = random.nextInt(PLAYERS);
+                int delta = 1 + random.nextInt(3);
+                store.increment(players[player], delta);
+                added[player] += delta;
+            }
+            return added;
+        });
+        for (long[] added : perThread) {
+            for (int i = 0; i < PLAYERS; i++) {
+                expected[i] += added[i];
+            }
+        }
+
+        assertTotals(store, storage, expected);
+    }
+
+    @ParameterizedTest(name = "writeThrough={0}")
+    @ValueSource(booleans = {false, true})
+    void compareAndSetRetryLoopsAreNotLost(boolean writeThrough) throws Exception {
+        MemoryBonusStorage storage = new MemoryBonusStorage(Map.of());
+        BonusStore store = newStore(storage, writeThrough);
+
+        hammer(random -> {
+            for (int i = 0; i < OPERATIONS; i++) {
+                UUID playerId = players[i % PLAYERS];
+                int current;
+                do {
+                    current = store.get(playerId);
+                } while (!store.compareAndSet(playerId, current, current + 1));
+            }
+            return null;
+        });
+
+        long[] expected = new long[PLAYERS];
+        for (int i = 0; i < PLAYERS; i++) {
+            expected[i] = (long) THREADS * OPERATIONS / PLAYERS;
+        }
+        assertTotals(store, storage, expected);
+    }
+
+    @ParameterizedTest(name = "writeThrough={0}")
+    @ValueSource(booleans = {false, true})
+    void mixedIncrementAndCompareAndSetAreNotLost(boolean writeThrough) throws Exception {
+        MemoryBonusStorage storage = new MemoryBonusStorage(Map.of());
+        BonusStore store = newStore(storage, writeThrough);
+
+        // Половина потоков прибавляет через increment, половина — через цикл compareAndSet
+        List<long[]> perThread = hammer(random -> {
+            boolean useCas = random.nextBoolean();
+            long[] added = new long[PLAYERS];
+            for (int i = 0; i < OPERATIONS; i++) {
+                int player = random.nextInt(PLAYERS);
+                if (useCas) {
+                    int current;
+                    do {
+                        current = store.get(players[player]);
+                    } while (!store.compareAndSet(players[player], current, current + 1));
+                } else {
+                    store.increment(players[player], 1);
+                }
+                added[player]++;
+            }
+            return added;
+        });
+
+        long[] expected = new long[PLAYERS];
+        for (long[] added : perThread) {
+            for (int i = 0; i < PLAYERS; i++) {
+                expected[i] += added[i];
+            }
+        }
+        assertTotals(store, storage, expected);
+    }
+
+    @ParameterizedTest(name = "writeThrough={0}")
+    @ValueSource(booleans = {false, true})
+    void mutationsDuringReloadAreNotLost(boolean writeThrough) throws Exception {
+        MemoryBonusStorage storage = new MemoryBonusStorage(Map.of());
+        BonusStore store = newStore(storage, writeThrough);
+        AtomicBoolean stop = new AtomicBoolean();
+        AtomicInteger reloads = new AtomicInteger();
+
+        // Как checkDataFile -> reloadIfChanged: перезагрузки и сбросы идут, пока игроки меняют бонусы
+        Thread reloader = new Thread(() -> {
+            try {
+                while (!stop.get()) {
+                    store.load();
+                    if (reloads.incrementAndGet() % 4 == 0) {
+                        store.flush();
+                    }
+                }
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }, "reloader");
+        reloader.start();
+
+        List<long[]> perThread;
+        try {
+            perThread = hammer(random -> {
+                long[] added = new long[PLAYERS];
+                for (int i = 0; i < OPERATIONS; i++) {
+                    int player = random.nextInt(PLAYERS);
+                    if (random.nextBoolean()) {
+                        store.increment(players[player], 1);
+                    } else {
+                        int current;
+                        do {
+                            current = store.get(players[player]);
+                        } while (!store.compareAndSet(players[player], current, current + 1));
+                    }
+                    added[player]++;
+                }
+                return added;
+            });
+        } finally {
+            stop.set(true);
+            reloader.join();
+        }
+
+        long[] expected = new long[PLAYERS];
+        for (long[] added : perThread) {
+            for (int i = 0; i < PLAYERS; i++) {
+                expected[i] += added[i];
+            }
+        }
+        assertTrue(reloads.get() > 0, "перезагрузка ни разу не выполнилась");
+        assertTotals(store, storage, expected);
+    }
+
+    private BonusStore newStore(MemoryBonusStorage storage, boolean writeThrough) throws Exception {
+        BonusStore store = new BonusStore(storage, Logger.getLogger("BonusStoreConcurrencyTest"));
+        store.load();
+        store.setWriteThrough(writeThrough);
+        return store;
+    }
+
+    /**
+     * Запускает worker во всех потоках одновременно и возвращает их результаты.
+     */
+    private <T> List<T> hammer(Worker<T> worker) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<T>> futures = new ArrayList<>(THREADS);
+            for (int i = 0; i < THREADS; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return worker.run(ThreadLocalRandom.current());
+                }));
+            }
+            start.countDown();
+
+            List<T> results = new ArrayList<>(THREADS);
+            for (Future<T> future : futures) {
+                results.add(future.get(60, TimeUnit.SECONDS));
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void assertTotals(BonusStore store, MemoryBonusStorage storage, long[] expected) {
+        store.flush();
+        long expectedSum = 0;
+        long storeSum = 0;
+        for (int i = 0; i < PLAYERS; i++) {
+            assertEquals(expected[i], store.get(players[i]), "значение в памяти, игрок " + i);
+            assertEquals(expected[i], storage.get(players[i]), "значение в хранилище, игрок " + i);
+            expectedSum += expected[i];
+            storeSum += store.get(players[i]);
+        }
+        assertEquals(expectedSum, storeSum);
+        assertEquals(0, store.getPendingWrites());
+        // Индекс для постраничного вывода меняется вместе со значениями
+        List<Map.Entry<UUID, Integer>> ranked = store.page(0, PLAYERS * 2);
+        assertEquals(PLAYERS, ranked.size());
+        for (Map.Entry<UUID, Integer> entry : ranked) {
+            assertEquals(store.get(entry.getKey()), entry.getValue().intValue());
+        }
+    }
+
+    @FunctionalInterface
+    private interface Worker<T> {
+        T run(ThreadLocalRandom random) throws Exception;
+    }
+}
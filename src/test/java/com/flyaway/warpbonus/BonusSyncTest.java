@@ -0,0 +1,235 @@
+package com.flyaway.warpbonus;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.ObjIntConsumer;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Два «сервера» с общим хранилищем, связанные {@link LocalSyncTransport}: изменение на одном
+ * после сообщения перечитывается на другом через {@link BonusStore#refresh}.
+ */
+class BonusSyncTest {
+    private static final Logger LOGGER = Logger.getLogger("BonusSyncTest");
+
+    private final MemoryBonusStorage sharedStorage = new MemoryBonusStorage(Map.of());
+    private final List<BonusSync> syncs = new ArrayList<>();
+
+    @AfterEach
+    void closeSyncs() {
+        syncs.forEach(BonusSync::close);
+    }
+
+    @Test
+    void changeOnOneServerIsRefreshedOnTheOther() throws Exception {
+        LocalSyncTransport.Bus bus = new LocalSyncTransport.Bus(Runnable::run);
+        List<BonusStore.Change> changesOnA = new CopyOnWriteArrayList<>();
+        List<BonusStore.Change> changesOnB = new CopyOnWriteArrayList<>();
+        Server a = new Server(bus, Runnable::run, (playerId, change) -> changesOnA.add(change));
+        Server b = new Server(bus, Runnable::run, (playerId, change) -> changesOnB.add(change));
+        UUID playerId = UUID.randomUUID();
+
+        a.store.set(playerId, 5);
+        a.sync.publish(playerId);
+
+        assertEquals(5, b.store.get(playerId));
+        assertEquals(List.of(new BonusStore.Change(0, 5)), changesOnB);
+        // Своё сообщение сервер не обрабатывает
+        assertEquals(List.of(), changesOnA);
+        assertEquals(1, a.sync.getSent());
+        assertEquals(1, b.sync.getReceived());
+        assertEquals(0, a.sync.getReceived());
+    }
+
+    @Test
+    void incrementsFromBothServersMeetInSharedStorage() throws Exception {
+        LocalSyncTransport.Bus bus = new LocalSyncTransport.Bus(Runnable::run);
+        Server a = new Server(bus, Runnable::run, (playerId, change) -> { });
+        Server b = new Server(bus, Runnable::run, (playerId, change) -> { });
+        UUID playerId = UUID.randomUUID();
+
+        a.store.increment(playerId, 3);
+        a.sync.publish(playerId);
+        b.store.increment(playerId, 2);
+        b.sync.publish(playerId);
+
+        assertEquals(5, sharedStorage.get(playerId));
+        assertEquals(5, a.store.get(playerId));
+        assertEquals(5, b.store.get(playerId));
+    }
+
+    @Test
+    void failedIncrementIsRetriedAsIncrement() throws Exception {
+        LocalSyncTransport.Bus bus = new LocalSyncTransport.Bus(Runnable::run);
+        FlakyStorage flaky = new FlakyStorage();
+        Server a = new Server(bus, Runnable::run, flaky, (playerId, change) -> { });
+        Server b = new Server(bus, Runnable::run, (playerId, change) -> { });
+        UUID playerId = UUID.randomUUID();
+
+        a.store.set(playerId, 10);
+        flaky.failing = true;
+        assertEquals(13, a.store.increment(playerId, 3));
+        assertEquals(1, a.store.getPendingWrites());
+
+        // Пока прибавка A не дошла, B прибавляет в общей базе; A видит обе
+        b.store.increment(playerId, 2);
+        b.sync.publish(playerId);
+        assertEquals(12, sharedStorage.get(playerId));
+        assertEquals(15, a.store.get(playerId));
+
+        flaky.failing = false;
+        assertEquals(1, a.store.flush());
+        a.sync.publish(playerId);
+
+        // Запись итогового значения A (13) затёрла бы прибавку B
+        assertEquals(15, sharedStorage.get(playerId));
+        assertEquals(15, a.store.get(playerId));
+        assertEquals(15, b.store.get(playerId));
+        assertEquals(0, a.store.getPendingWrites());
+    }
+
+    @Test
+    void removalIsRefreshedOnTheOther() throws Exception {
+        LocalSyncTransport.Bus bus = new LocalSyncTransport.Bus(Runnable::run);
+        Server a = new Server(bus, Runnable::run, (playerId, change) -> { });
+        Server b = new Server(bus, Runnable::run, (playerId, change) -> { });
+        UUID playerId = UUID.randomUUID();
+
+        a.store.set(playerId, 4);
+        a.sync.publish(playerId);
+        assertEquals(4, b.store.get(playerId));
+
+        a.store.set(playerId, 0);
+        a.sync.publish(playerId);
+        assertEquals(0, b.store.get(playerId));
+        assertEquals(0, b.store.size());
+        assertEquals(0, b.store.page(0, 10).size());
+    }
+
+    @Test
+    void concurrentWritesOnBothServersConverge() throws Exception {
+        ExecutorService delivery = Executors.newFixedThreadPool(4);
+        ExecutorService refreshA = Executors.newFixedThreadPool(2);
+        ExecutorService refreshB = Executors.newFixedThreadPool(2);
+        LocalSyncTransport.Bus bus = new LocalSyncTransport.Bus(delivery);
+        Server a = new Server(bus, refreshA, (playerId, change) -> { });
+        Server b = new Server(bus, refreshB, (playerId, change) -> { });
+        UUID[] players = {UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID()};
+        int writesPerServer = 2_000;
+
+        CountDownLatch done = new CountDownLatch(2);
+        for (Server server : List.of(a, b)) {
+            new Thread(() -> {
+                for (int i = 0; i < writesPerServer; i++) {
+                    UUID playerId = players[i % players.length];
+                    server.store.increment(playerId, 1);
+                    server.sync.publish(playerId);
+                }
+                done.countDown();
+            }).start();
+        }
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+
+        // Сначала доставляются все сообщения, затем выполняются все перечитывания
+        delivery.shutdown();
+        assertTrue(delivery.awaitTermination(30, TimeUnit.SECONDS));
+        refreshA.shutdown();
+        refreshB.shutdown();
+        assertTrue(refreshA.awaitTermination(30, TimeUnit.SECONDS));
+        assertTrue(refreshB.awaitTermination(30, TimeUnit.SECONDS));
+
+        long total = 0;
+        for (UUID playerId : players) {
+            assertEquals(sharedStorage.get(playerId), a.store.get(playerId));
+            assertEquals(sharedStorage.get(playerId), b.store.get(playerId));
+            total += sharedStorage.get(playerId);
+        }
+        assertEquals(2L * writesPerServer, total);
+    }
+
+    private final class Server {
+        private final BonusStore store;
+        private final BonusSync sync;
+
+        private Server(LocalSyncTransport.Bus bus, Executor executor,
+                       BiConsumer<UUID, BonusStore.Change> onChanged) throws Exception {
+            this(bus, executor, sharedStorage, onChanged);
+        }
+
+        private Server(LocalSyncTransport.Bus bus, Executor executor, BonusStorage storage,
+                       BiConsumer<UUID, BonusStore.Change> onChanged) throws Exception {
+            this.store = new BonusStore(storage, LOGGER);
+            store.load();
+            store.setWriteThrough(true);
+            this.sync = new BonusSync(store, executor, onChanged, LOGGER, receiver -> new LocalSyncTransport(bus, receiver));
+            syncs.add(sync);
+        }
+    }
+
+    /**
+     * Общая база, запись в которую с этого сервера временно не проходит.
+     */
+    private final class FlakyStorage implements BonusStorage {
+        private volatile boolean failing;
+
+        @Override
+        public String getName() {
+            return "flaky";
+        }
+
+        @Override
+        public Map<UUID, Integer> loadAll() {
+            return sharedStorage.loadAll();
+        }
+
+        @Override
+        public int get(UUID playerId) {
+            return sharedStorage.get(playerId);
+        }
+
+        @Override
+        public void set(UUID playerId, int amount) throws IOException {
+            checkAvailable();
+            sharedStorage.set(playerId, amount);
+        }
+
+        @Override
+        public int increment(UUID playerId, int delta) throws IOException {
+            checkAvailable();
+            return sharedStorage.increment(playerId, delta);
+        }
+
+        @Override
+        public void list(ObjIntConsumer<UUID> consumer) {
+            sharedStorage.list(consumer);
+        }
+
+        @Override
+        public void saveBatch(Map<UUID, Integer> changes) throws IOException {
+            checkAvailable();
+            sharedStorage.saveBatch(changes);
+        }
+
+        private void checkAvailable() throws IOException {
+            if (failing) {
+                throw new IOException("база недоступна");
+            }
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.flyaway.warpbonus;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Импорт с заменой: пустой или повреждённый файл не должен лишить бонусов всех игроков.
+ */
+class BonusTransferTest {
+    private static final Logger LOGGER = Logger.getLogger("BonusTransferTest");
+
+    private final UUID first = UUID.randomUUID();
+    private final UUID second = UUID.randomUUID();
+    private final UUID third = UUID.randomUUID();
+
+    private Path folder;
+    private BonusStore store;
+    private BonusTransfer transfer;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        folder = Files.createTempDirectory("warpbonus-transfer");
+        store = new BonusStore(new MemoryBonusStorage(Map.of(first, 1, second, 2, third, 3)), LOGGER);
+        store.load();
+        transfer = new BonusTransfer(store, folder.toFile(), this::apply, LOGGER);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        transfer.shutdown();
+        try (var files = Files.list(folder)) {
+            for (Path file : files.toList()) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(folder);
+    }
+
+    @Test
+    void planReportsRemovalsWithoutChangingAnything() throws Exception {
+        File source = write("# комментарий", first + " 10", second + ":2");
+
+        BonusTransfer.ReplacePlan plan = transfer.planReplace(source).join();
+
+        assertEquals(new BonusTransfer.ReplacePlan(2, 0, 1), plan);
+        assertNull(plan.refusal());
+        assertEquals(1, store.get(first));
+        assertEquals(3, store.get(third));
+    }
+
+    @Test
+    void replaceAppliesValidFile() throws Exception {
+        File source = write(first + " 10", second + " 2");
+
+        BonusTransfer.ImportResult result = transfer.importFrom(source, true).join();
+
+        assertEquals(2, result.read());
+        assertEquals(1, result.changed());
+        assertEquals(1, result.removed());
+        assertEquals(10, store.get(first));
+        assertEquals(2, store.get(second));
+        assertEquals(0, store.get(third));
+    }
+
+    @Test
+    void replaceRefusesEmptyFile() throws Exception {
+        File source = write("# WarpBonus export v1: <UUID> <количество>");
+
+        assertTrue(transfer.planReplace(source).join().refusal() != null);
+        assertRefused(source);
+    }
+
+    @Test
+    void replaceRefusesFileWithInvalidLines() throws Exception {
+        File source = write(first + " 10", "обрезанная строка", second + " -1");
+
+        BonusTransfer.ReplacePlan plan = transfer.planReplace(source).join();
+        assertEquals(2, plan.invalid());
+        assertTrue(plan.refusal() != null);
+        assertRefused(source);
+    }
+
+    @Test
+    void mergeStillAppliesValidLinesOfDamagedFile() throws Exception {
+        File source = write(first + " 10", "обрезанная строка");
+
+        BonusTransfer.ImportResult result = transfer.importFrom(source, false).join();
+
+        assertEquals(1, result.invalid());
+        assertEquals(10, store.get(first));
+        assertEquals(3, store.get(third));
+    }
+
+    private void assertRefused(File source) {
+        CompletionException error = assertThrows(CompletionException.class, () -> transfer.importFrom(source, true).join());
+        assertTrue(error.getCause() instanceof IllegalStateException, String.valueOf(error.getCause()));
+        assertEquals(1, store.get(first));
+        assertEquals(2, store.get(second));
+        assertEquals(3, store.get(third));
+    }
+
+    private File write(String... lines) throws IOException {
+        Path file = folder.resolve("import.txt");
+        Files.write(file, List.of(lines), StandardCharsets.UTF_8);
+        return file.toFile();
+    }
+
+    private CompletableFuture<BulkBonusUpdate.Result> apply(List<BulkBonusUpdate.Entry> entries) {
+        List<BulkBonusUpdate.EntryResult> results = new ArrayList<>(entries.size());
+        for (BulkBonusUpdate.Entry entry : entries) {
+            int current = store.set(entry.playerId(), entry.amount()).current();
+            results.add(new BulkBonusUpdate.EntryResult(entry, entry.playerId(), current, null));
+        }
+        return CompletableFuture.completedFuture(new BulkBonusUpdate.Result(results, 0));
+    }
+}
@@ -0,0 +1,45 @@
+package com.flyaway.warpbonus;
+
+import net.luckperms.api.model.group.Group;
+import net.luckperms.api.node.Node;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Перестройка индекса после синхронизации LuckPerms сообщает, у каких групп изменился лимит.
+ */
+class GroupLimitIndexTest {
+    private final List<Group> groups = new ArrayList<>();
+    private final GroupLimitIndex index = new GroupLimitIndex(LuckPermsFakes.groupManager(groups));
+
+    @Test
+    void rebuildReportsOnlyChangedGroups() {
+        List<Node> vipNodes = new ArrayList<>(List.of(warps(5)));
+        groups.add(LuckPermsFakes.group("vip", vipNodes));
+        groups.add(LuckPermsFakes.group("default", List.of(warps(3))));
+        groups.add(LuckPermsFakes.group("builder", List.of(LuckPermsFakes.node("worldedit.use", true))));
+
+        assertEquals(Set.of("vip", "default"), index.rebuild());
+        assertEquals(Set.of(), index.rebuild());
+
+        // На другом сервере: vip 5 -> 7, default удалена, появилась helper
+        vipNodes.set(0, warps(7));
+        groups.remove(1);
+        groups.add(LuckPermsFakes.group("helper", List.of(warps(2))));
+
+        assertEquals(Set.of("vip", "default", "helper"), index.rebuild());
+        assertEquals(7, index.getLimit("vip"));
+        assertEquals(0, index.getLimit("default"));
+        assertEquals(2, index.getLimit("helper"));
+        assertEquals(2, index.size());
+    }
+
+    private static Node warps(int limit) {
+        return LuckPermsFakes.node(WarpBonusManager.WARP_PERMISSION_PREFIX + limit, true);
+    }
+}
@@ -0,0 +1,61 @@
+package com.flyaway.warpbonus;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class PlayerNameIndexTest {
+    private final PlayerNameIndex index = new PlayerNameIndex();
+
+    @Test
+    void namesOfUntrackedPlayersAreNotKept() {
+        UUID playerId = UUID.randomUUID();
+        index.put(playerId, "Steve");
+
+        assertFalse(index.contains(playerId));
+        assertEquals(0, index.size());
+        assertEquals(List.of(), index.complete("st", 10));
+    }
+
+    @Test
+    void untrackingEvictsTheName() {
+        UUID playerId = UUID.randomUUID();
+        index.setTracked(playerId, true);
+        index.put(playerId, "Steve");
+        assertEquals(List.of("Steve"), index.complete("st", 10));
+
+        index.setTracked(playerId, false);
+        assertNull(index.getName(playerId));
+        assertEquals(0, index.size());
+        assertEquals(0, index.sortedIds().size());
+        assertEquals(List.of(), index.complete("st", 10));
+    }
+
+    @Test
+    void renameReplacesTheSortKey() {
+        UUID playerId = UUID.randomUUID();
+        index.setTracked(playerId, true);
+        index.put(playerId, "Steve");
+        index.put(playerId, "Alex");
+
+        assertEquals(List.of("Alex"), index.complete("a", 10));
+        assertEquals(List.of(), index.complete("st", 10));
+        assertEquals(1, index.sortedIds().size());
+    }
+
+    @Test
+    void completionIsSortedCaseInsensitiveAndLimited() {
+        for (String playerName : List.of("bob", "Bella", "BART", "alice")) {
+            UUID playerId = UUID.randomUUID();
+            index.setTracked(playerId, true);
+            index.put(playerId, playerName);
+        }
+
+        assertEquals(List.of("BART", "Bella"), index.complete("B", 2));
+    }
+}
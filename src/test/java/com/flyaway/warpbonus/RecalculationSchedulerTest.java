@@ -0,0 +1,68 @@
+package com.flyaway.warpbonus;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Операции планировщика выполняются в его пуле, а не в потоке, который их поставил или освободил слот.
+ */
+class RecalculationSchedulerTest {
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> new Thread(r, "recalculation"));
+    private final RecalculationScheduler scheduler =
+            new RecalculationScheduler(1, executor, new WarpBonusMetrics(Logger.getLogger("RecalculationSchedulerTest")));
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void queuedOperationDoesNotRunOnReleasingThread() throws Exception {
+        CompletableFuture<Integer> firstSave = new CompletableFuture<>();
+        CompletableFuture<Thread> firstThread = new CompletableFuture<>();
+        CompletableFuture<Thread> secondThread = new CompletableFuture<>();
+
+        CompletableFuture<Integer> first = scheduler.submit(RecalculationScheduler.Lane.ONLINE, () -> {
+            firstThread.complete(Thread.currentThread());
+            return firstSave;
+        });
+        CompletableFuture<Integer> second = scheduler.submit(RecalculationScheduler.Lane.BULK, () -> {
+            secondThread.complete(Thread.currentThread());
+            return CompletableFuture.completedFuture(2);
+        });
+
+        assertNotSame(Thread.currentThread(), firstThread.get(5, TimeUnit.SECONDS));
+        assertEquals(1, scheduler.getWaiting());
+
+        // Как будто сохранение LuckPerms завершилось в основном потоке сервера
+        firstSave.complete(1);
+        assertEquals(1, first.get(5, TimeUnit.SECONDS));
+        assertEquals(2, second.get(5, TimeUnit.SECONDS));
+        assertEquals("recalculation", secondThread.get().getName());
+        assertEquals(0, scheduler.getInFlight());
+    }
+
+    @Test
+    void operationsFailAfterExecutorShutdown() {
+        executor.shutdown();
+
+        CompletableFuture<Integer> result = scheduler.submit(RecalculationScheduler.Lane.ADMIN,
+                () -> CompletableFuture.completedFuture(1));
+
+        Exception error = assertThrows(Exception.class, () -> result.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(RejectedExecutionException.class, error.getCause());
+        assertEquals(0, scheduler.getInFlight());
+    }
+}
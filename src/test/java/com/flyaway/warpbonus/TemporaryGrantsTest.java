@@ -0,0 +1,83 @@
+package com.flyaway.warpbonus;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Список временных выдач: сроки не теряются ни при ошибке чтения, ни за время простоя сервера.
+ */
+class TemporaryGrantsTest {
+    private static final Logger LOGGER = Logger.getLogger("TemporaryGrantsTest");
+
+    private final Map<UUID, Integer> expired = new ConcurrentHashMap<>();
+    private Path folder;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        folder = Files.createTempDirectory("warpbonus-grants");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(folder)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Test
+    void unreadableFileFailsLoadAndIsNeverOverwritten() throws IOException {
+        // Каталог на месте файла: существует, но прочитать его нельзя
+        File file = folder.resolve("temporary_grants.yml").toFile();
+        assertTrue(file.mkdir());
+        TemporaryGrants grants = new TemporaryGrants(file, LOGGER, expired::put);
+
+        assertThrows(IOException.class, grants::load);
+
+        grants.add(UUID.randomUUID(), 1, System.currentTimeMillis() + 60_000);
+        assertTrue(file.isDirectory(), "список выдач перезаписан до загрузки");
+    }
+
+    @Test
+    void grantsExpiredWhileOfflineAreRemovedOnFirstTick() throws IOException {
+        UUID offline = UUID.randomUUID();
+        UUID active = UUID.randomUUID();
+        long now = System.currentTimeMillis();
+        File file = folder.resolve("temporary_grants.yml").toFile();
+        Files.write(file.toPath(), List.of(
+                "1 " + offline + " 2 " + (now - 60_000),
+                "2 " + offline + " 1 " + (now - 30_000),
+                "3 " + active + " 5 " + (now + 3_600_000)), StandardCharsets.UTF_8);
+        TemporaryGrants grants = new TemporaryGrants(file, LOGGER, expired::put);
+
+        grants.load();
+        // До первого тика плагин ещё не готов снимать бонусы
+        assertEquals(Map.of(), expired);
+        assertEquals(1, grants.size());
+
+        grants.tick();
+        assertEquals(Map.of(offline, 3), expired);
+        List<String> saved = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+        assertEquals(2, saved.size());
+        assertTrue(saved.get(1).startsWith("3 " + active), saved.get(1));
+    }
+}